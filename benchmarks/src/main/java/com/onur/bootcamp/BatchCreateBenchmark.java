@@ -0,0 +1,61 @@
+package com.onur.bootcamp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notes created per second through POST /notes style single transactions against the
+ * POST /notes/batch path. The disk database pays a commit per transaction like the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchCreateBenchmark {
+    private static final int NOTES = 500;
+
+    @Param({"memory", "disk"})
+    String storage;
+
+    private BenchmarkDatabase db;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        db = "disk".equals(storage) ? BenchmarkDatabase.onDisk("bench-batch") : BenchmarkDatabase.inMemory("batch");
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTES)
+    public void oneByOne() {
+        for (int i = 0; i < NOTES; i++) {
+            db.em.getTransaction().begin();
+            db.noteService.createNote(NoteFixtures.note(next++));
+            db.em.getTransaction().commit();
+        }
+        db.em.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTES)
+    public void batch() {
+        List<Note> notes = new ArrayList<>(NOTES);
+        for (int i = 0; i < NOTES; i++) {
+            notes.add(NoteFixtures.note(next++));
+        }
+        db.em.getTransaction().begin();
+        db.noteService.createNotes(notes);
+        db.em.getTransaction().commit();
+        db.em.clear();
+    }
+}
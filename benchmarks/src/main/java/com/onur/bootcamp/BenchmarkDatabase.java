@@ -0,0 +1,173 @@
+package com.onur.bootcamp;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.NotificationOptions;
+import jakarta.enterprise.util.TypeLiteral;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.validator.messageinterpolation.ParameterMessageInterpolator;
+
+import java.lang.annotation.Annotation;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Wires NoteService and its collaborators the way CDI does in the application with app.store=jpa,
+ * on an H2 database bootstrapped by plain Hibernate. Transactions are resource local,
+ * benchmarks begin and commit them around the @Transactional service methods.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+    final SessionFactory sessionFactory;
+    final EntityManager em;
+    final JpaNoteStore store;
+    final NoteService noteService;
+    final TitleTrigramIndex titleIndex;
+    final List<Consumer<NoteEvent>> observers = new ArrayList<>();
+
+    static BenchmarkDatabase inMemory(String name) {
+        return new BenchmarkDatabase("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+    }
+
+    static BenchmarkDatabase onDisk(String name) {
+        return new BenchmarkDatabase("jdbc:h2:file:./target/" + name);
+    }
+
+    private BenchmarkDatabase(String url) {
+        MeterRegistry registry = new SimpleMeterRegistry();
+
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Note.class)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL, url)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_USER, "sa")
+                .setProperty(AvailableSettings.JAKARTA_JDBC_PASSWORD, "sa")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, "50")
+                .buildSessionFactory();
+        em = sessionFactory.createEntityManager();
+
+        store = new JpaNoteStore();
+        store.em = em;
+        store.sessionFactory = sessionFactory;
+        store.queries = new NoteQueries();
+        store.queries.emf = sessionFactory;
+        store.queries.store = "jpa";
+        store.queries.init();
+        store.batchSize = 50;
+        store.exportFetchSize = 500;
+
+        titleIndex = new TitleTrigramIndex();
+        titleIndex.store = store;
+        titleIndex.maxCandidates = 100;
+
+        NoteSearchIndex searchIndex = new NoteSearchIndex();
+        searchIndex.store = store;
+        searchIndex.maxWindow = 1000;
+
+        NoteCounts noteCounts = new NoteCounts();
+        noteCounts.store = store;
+        noteCounts.filteredMaxSize = 1000;
+        noteCounts.filteredExpireAfterWrite = Duration.ofSeconds(5);
+        noteCounts.registry = registry;
+        noteCounts.init();
+
+        NoteCache noteCache = new NoteCache();
+        noteCache.maxSize = 10_000;
+        noteCache.expireAfterWrite = Duration.ofMinutes(5);
+        noteCache.registry = registry;
+        noteCache.init();
+
+        noteService = new NoteService();
+        noteService.store = store;
+        noteService.titleIndex = titleIndex;
+        noteService.searchIndex = searchIndex;
+        noteService.noteCache = noteCache;
+        noteService.noteCounts = noteCounts;
+        noteService.metrics = new NoteMetrics();
+        noteService.metrics.registry = registry;
+        // No interceptors run here, so like the annotated methods the cache loaders are not admitted either
+        noteService.admission = new AdmissionController();
+        noteService.admission.enabled = false;
+        noteService.latestNote = new LatestNoteTracker();
+        noteService.noteRevision = new NoteRevision();
+        noteService.noteEvents = new DirectEvent();
+        noteService.validator = Validation.byDefaultProvider()
+                .configure()
+                .messageInterpolator(new ParameterMessageInterpolator())
+                .buildValidatorFactory()
+                .getValidator();
+    }
+
+    // Fixture loading through the batch create path, in transactions of a few thousand notes
+    void insertNotes(int count, IntFunction<Note> factory) {
+        int chunk = 5_000;
+        for (int start = 0; start < count; start += chunk) {
+            List<Note> notes = new ArrayList<>(chunk);
+            for (int i = start; i < Math.min(count, start + chunk); i++) {
+                notes.add(factory.apply(i));
+            }
+            em.getTransaction().begin();
+            noteService.createNotes(notes);
+            em.getTransaction().commit();
+            em.clear();
+        }
+    }
+
+    // Same as the startup observer, reads every title into the trigram index
+    void loadTitleIndex() {
+        titleIndex.onStart(null);
+        em.clear();
+    }
+
+    @Override
+    public void close() {
+        em.close();
+        sessionFactory.close();
+    }
+
+    // Delivers events synchronously, there is no transaction manager to wait for. Qualifiers are ignored,
+    // every observer gets every event
+    private class DirectEvent implements Event<NoteEvent> {
+        @Override
+        public void fire(NoteEvent event) {
+            for (Consumer<NoteEvent> observer : observers) observer.accept(event);
+        }
+
+        @Override
+        public <U extends NoteEvent> CompletionStage<U> fireAsync(U event) {
+            fire(event);
+            return CompletableFuture.completedFuture(event);
+        }
+
+        @Override
+        public <U extends NoteEvent> CompletionStage<U> fireAsync(U event, NotificationOptions options) {
+            return fireAsync(event);
+        }
+
+        @Override
+        public Event<NoteEvent> select(Annotation... qualifiers) {
+            return this;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <U extends NoteEvent> Event<U> select(Class<U> subtype, Annotation... qualifiers) {
+            return (Event<U>) this;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <U extends NoteEvent> Event<U> select(TypeLiteral<U> subtype, Annotation... qualifiers) {
+            return (Event<U>) this;
+        }
+    }
+}
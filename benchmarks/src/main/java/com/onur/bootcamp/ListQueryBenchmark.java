@@ -0,0 +1,78 @@
+package com.onur.bootcamp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NoteService.getAllNotes end to end: sort parsing, JPQL building, parameter binding and the H2 query.
+ * The persistence context is cleared on every call, like a request-scoped one in the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListQueryBenchmark {
+    @Param({"10000"})
+    int notes;
+
+    @Param({"urgency", "title", "content", "id"})
+    String sortField;
+
+    private String sort;
+
+    private BenchmarkDatabase db;
+    private NoteCursor middle;
+    private int middlePage;
+
+    @Setup
+    public void setUp() {
+        sort = sortField + ",desc";
+        db = BenchmarkDatabase.inMemory("list");
+        db.insertNotes(notes, NoteFixtures::note);
+        db.loadTitleIndex();
+
+        middlePage = notes / 10 / 2;
+        List<Note> beforeMiddle = db.noteService.getAllNotes(middlePage - 1, 10, sort, null, null);
+        middle = NoteCursor.after(beforeMiddle.get(beforeMiddle.size() - 1), NoteSort.parse(sort));
+        db.em.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public List<Note> firstPage() {
+        db.em.clear();
+        return db.noteService.getAllNotes(1, 10, sort, null, null);
+    }
+
+    @Benchmark
+    public List<Note> middlePageByOffset() {
+        db.em.clear();
+        return db.noteService.getAllNotes(middlePage, 10, sort, null, null);
+    }
+
+    @Benchmark
+    public List<Note> middlePageByCursor() {
+        db.em.clear();
+        return db.noteService.getAllNotes(1, 10, sort, null, null, middle);
+    }
+
+    @Benchmark
+    public List<Note> urgencyFilter() {
+        db.em.clear();
+        return db.noteService.getAllNotes(1, 10, sort, Urgency.HIGH, null);
+    }
+
+    @Benchmark
+    public List<Note> titleAndUrgencyFilter() {
+        db.em.clear();
+        return db.noteService.getAllNotes(1, 10, sort, Urgency.HIGH, "eview");
+    }
+}
@@ -0,0 +1,36 @@
+package com.onur.bootcamp;
+
+import java.util.SplittableRandom;
+
+// Deterministic notes with varied titles and contents, so text filters and sorts have work to do
+final class NoteFixtures {
+    private static final String[] WORDS = {
+            "meeting", "report", "invoice", "release", "budget", "review", "backlog", "deploy",
+            "customer", "roadmap", "hiring", "offsite", "security", "audit", "migration", "retro"
+    };
+
+    private NoteFixtures() {}
+
+    static Note note(int i) {
+        SplittableRandom random = new SplittableRandom(i);
+        String word = WORDS[random.nextInt(WORDS.length)];
+        String code = Integer.toString(random.nextInt(Integer.MAX_VALUE), 36);
+        Urgency urgency = Urgency.values()[random.nextInt(3)];
+        return new Note(null, word + " notes for " + code + " " + i, capitalize(word) + " " + code, urgency);
+    }
+
+    // A fragment that matches only the title of note i
+    static String selectiveFragment(int i) {
+        String title = note(i).getTitle();
+        return title.substring(title.indexOf(' ') + 1);
+    }
+
+    // A fragment shared by a sixteenth of all titles
+    static String broadFragment() {
+        return "eview";
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
@@ -0,0 +1,47 @@
+package com.onur.bootcamp;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-request parsing and validation that runs before any query
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+    private final NoteUpdateRequest validUpdate = new NoteUpdateRequest("new content", "new title", Urgency.HIGH);
+    private final NoteUpdateRequest blankUpdate = new NoteUpdateRequest(" ", null, null);
+
+    @Benchmark
+    public Urgency urgencyFromString() {
+        return Urgency.fromString("medium");
+    }
+
+    @Benchmark
+    public NoteSort sortParse() {
+        return NoteSort.parse("title,asc");
+    }
+
+    @Benchmark
+    public NoteSort sortParseFallback() {
+        return NoteSort.parse("unknown,sideways");
+    }
+
+    @Benchmark
+    public void updateValidateValid() {
+        validUpdate.validate();
+    }
+
+    @Benchmark
+    public void updateValidateBlank(Blackhole blackhole) {
+        try {
+            blankUpdate.validate();
+        } catch (IllegalArgumentException e) {
+            blackhole.consume(e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.onur.bootcamp;
+
+import jakarta.persistence.TypedQuery;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of getting from the request parameters to a ready TypedQuery, without running it.
+ * concatenated is the way getAllNotes worked before the named queries: regex checks on the
+ * split sort parameter, then JPQL built per request and looked up in Hibernate's query cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryPreparationBenchmark {
+    @Param({"title,asc", "urgency,desc"})
+    String sort;
+
+    private BenchmarkDatabase db;
+
+    @Setup
+    public void setUp() {
+        db = BenchmarkDatabase.inMemory("preparation");
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public TypedQuery<Note> concatenated() {
+        String[] sortParts = sort.split(",");
+        String sortField = sortParts[0];
+        String sortOrder = (sortParts.length > 1) ? sortParts[1].toUpperCase() : "DESC";
+        if (!sortField.matches("id|title|urgency|content")) sortField = "urgency";
+        if (!sortOrder.matches("ASC|DESC")) sortOrder = "DESC";
+
+        NoteSort noteSort = NoteSort.parse(sortField + "," + sortOrder);
+        String jpql = NoteQueries.jpql(noteSort, NoteQueries.TITLE_LIKE, true, false);
+        return db.em.createQuery(jpql, Note.class);
+    }
+
+    @Benchmark
+    public TypedQuery<Note> named() {
+        NoteSort noteSort = NoteSort.parse(sort);
+        String name = db.store.queries.listQuery(noteSort, NoteQueries.TITLE_LIKE, true, false);
+        return db.em.createNamedQuery(name, Note.class);
+    }
+}
@@ -0,0 +1,49 @@
+package com.onur.bootcamp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Jackson encoding of the response bodies the API sends most
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"1", "10", "100"})
+    int pageSize;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ObjectWriter listWriter;
+    private List<Note> page;
+    private final ErrorResponse error = new ErrorResponse("Note not found", 404);
+
+    @Setup
+    public void setUp() {
+        page = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            Note note = NoteFixtures.note(i);
+            note.setId(i + 1);
+            note.setVersion(0);
+            page.add(note);
+        }
+        listWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, Note.class));
+    }
+
+    @Benchmark
+    public byte[] notePage() throws JsonProcessingException {
+        return listWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] errorResponse() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(error);
+    }
+}
@@ -0,0 +1,61 @@
+package com.onur.bootcamp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Title substring filter through the trigram index against the plain LIKE scan it replaces.
+ * With "like" the index is never loaded, so getAllNotes takes its fallback path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class TitleFilterBenchmark {
+    @Param({"100000", "1000000"})
+    int notes;
+
+    @Param({"like", "trigram"})
+    String path;
+
+    private BenchmarkDatabase db;
+    private String selective;
+
+    @Setup
+    public void setUp() {
+        db = BenchmarkDatabase.inMemory("title");
+        db.insertNotes(notes, NoteFixtures::note);
+        if ("trigram".equals(path)) {
+            db.loadTitleIndex();
+        }
+        selective = NoteFixtures.selectiveFragment(notes / 2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public List<Note> selectiveFragment() {
+        db.em.clear();
+        return db.noteService.getAllNotes(1, 10, "urgency,desc", null, selective);
+    }
+
+    @Benchmark
+    public List<Note> selectiveFragmentWithUrgency() {
+        db.em.clear();
+        return db.noteService.getAllNotes(1, 10, "urgency,desc", Urgency.HIGH, selective);
+    }
+
+    // Matches too many notes for an id list, both paths end up scanning
+    @Benchmark
+    public List<Note> broadFragment() {
+        db.em.clear();
+        return db.noteService.getAllNotes(1, 10, "urgency,desc", null, NoteFixtures.broadFragment());
+    }
+}
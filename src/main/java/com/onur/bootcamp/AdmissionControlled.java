@@ -0,0 +1,33 @@
+package com.onur.bootcamp;
+
+import jakarta.enterprise.util.Nonbinding;
+import jakarta.interceptor.InterceptorBinding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Database work that has to be admitted by AdmissionController first, see AdmissionInterceptor
+@InterceptorBinding
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AdmissionControlled {
+    // Bulk work is shed first, reads last
+    enum Kind {
+        READ(1.0, true), WRITE(0.8, true), BULK(0.5, false);
+
+        // Share of the concurrency limit this kind may fill
+        final double share;
+        // Whether its latency moves the limit. A bulk call takes as long as its size, not as the database is slow
+        final boolean sampled;
+
+        Kind(double share, boolean sampled) {
+            this.share = share;
+            this.sampled = sampled;
+        }
+    }
+
+    @Nonbinding
+    Kind value() default Kind.READ;
+}
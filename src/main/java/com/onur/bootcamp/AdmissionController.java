@@ -0,0 +1,142 @@
+package com.onur.bootcamp;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive limit on concurrent database calls (AIMD). While reads and single writes finish within
+ * max-latency and the limit is at least half used, it grows by about one per limit completed calls.
+ * A slower call cuts it by the backoff factor, at most once per such call's duration, so a burst of slow
+ * completions counts as one signal. Bulk calls take as long as their size and do not move the limit.
+ * Calls beyond the limit fail right away instead of queueing for a connection, which keeps latency
+ * bounded for the admitted ones. Bulk work and writes may only fill part of the limit, so when the
+ * database slows down they are shed before reads.
+ */
+@ApplicationScoped
+public class AdmissionController {
+    @Inject
+    @ConfigProperty(name = "app.admission.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "app.admission.initial-limit", defaultValue = "20")
+    int initialLimit;
+
+    @Inject
+    @ConfigProperty(name = "app.admission.min-limit", defaultValue = "2")
+    int minLimit;
+
+    @Inject
+    @ConfigProperty(name = "app.admission.max-limit", defaultValue = "200")
+    int maxLimit;
+
+    @Inject
+    @ConfigProperty(name = "app.admission.max-latency", defaultValue = "100ms")
+    Duration maxLatency;
+
+    @Inject
+    @ConfigProperty(name = "app.admission.backoff", defaultValue = "0.9")
+    double backoff;
+
+    @Inject
+    @ConfigProperty(name = "app.admission.retry-after", defaultValue = "1s")
+    Duration retryAfter;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<AdmissionControlled.Kind, Counter> rejections = new EnumMap<>(AdmissionControlled.Kind.class);
+    private volatile double limit;
+    private long lastDecrease; // guarded by this
+
+    @PostConstruct
+    void init() {
+        limit = initialLimit;
+        lastDecrease = System.nanoTime();
+        Gauge.builder("notes.admission.limit", this, AdmissionController::limit)
+                .description("Current limit of concurrent database calls")
+                .register(registry);
+        Gauge.builder("notes.admission.in_flight", inFlight, AtomicInteger::get)
+                .description("Admitted database calls running now")
+                .register(registry);
+        for (AdmissionControlled.Kind kind : AdmissionControlled.Kind.values()) {
+            rejections.put(kind, Counter.builder("notes.admission.rejected")
+                    .description("Database calls shed by admission control")
+                    .tag("kind", kind.name().toLowerCase())
+                    .register(registry));
+        }
+    }
+
+    public <T> T call(AdmissionControlled.Kind kind, Callable<T> operation) throws Exception {
+        if (!enabled) {
+            return operation.call();
+        }
+
+        int running = tryAcquire(kind);
+        if (running < 0) {
+            rejections.get(kind).increment();
+            throw new OverloadedException("Database is busy, retry later", Math.max(1, retryAfter.toSeconds()));
+        }
+
+        long start = System.nanoTime();
+        try {
+            return operation.call();
+        } finally {
+            inFlight.decrementAndGet();
+            if (kind.sampled) {
+                onSample(start, System.nanoTime(), running);
+            }
+        }
+    }
+
+    // For loaders behind a cache, so that only misses have to be admitted
+    public <T> T supply(AdmissionControlled.Kind kind, Supplier<T> operation) {
+        try {
+            return call(kind, operation::get);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e); // a Supplier throws no checked exceptions
+        }
+    }
+
+    // Calls in flight including this one, or -1 when this kind has no room left
+    private int tryAcquire(AdmissionControlled.Kind kind) {
+        int allowed = Math.max(1, (int) (limit * kind.share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) return -1;
+            if (inFlight.compareAndSet(current, current + 1)) return current + 1;
+        }
+    }
+
+    synchronized void onSample(long start, long end, int running) {
+        long latency = end - start;
+        if (latency > maxLatency.toNanos()) {
+            // Calls that started before the last cut do not reflect it yet
+            if (start > lastDecrease) {
+                limit = Math.max(minLimit, limit * backoff);
+                lastDecrease = end;
+            }
+        } else if (running * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    double limit() {
+        return limit;
+    }
+}
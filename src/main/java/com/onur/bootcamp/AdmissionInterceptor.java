@@ -0,0 +1,22 @@
+package com.onur.bootcamp;
+
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+
+// Runs before @Transactional, a rejected call never starts a transaction or asks for a connection
+@AdmissionControlled
+@Interceptor
+@Priority(Interceptor.Priority.PLATFORM_BEFORE)
+public class AdmissionInterceptor {
+    @Inject
+    AdmissionController controller;
+
+    @AroundInvoke
+    Object admit(InvocationContext context) throws Exception {
+        AdmissionControlled binding = context.getMethod().getAnnotation(AdmissionControlled.class);
+        return controller.call(binding != null ? binding.value() : AdmissionControlled.Kind.READ, context::proceed);
+    }
+}
@@ -1,38 +1,138 @@
 package com.onur.bootcamp;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.ws.rs.HttpMethod;
 import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.Provider;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import jakarta.inject.Inject;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Writes need one of the configured API keys and are limited per key. Keys are only known by their
+ * SHA-256, a presented key is hashed and looked up, so no comparison runs over the secret itself.
+ * Every key has its own token bucket, one busy client gets 429 without slowing the others down.
+ */
 @Provider
 public class ApiKeyAuthFilter implements ContainerRequestFilter {
     private static final String API_KEY_HEADER = "X-API-Key";
 
+    // Plain key, kept for existing setups, it is hashed at startup like the others
     @Inject
     @ConfigProperty(name = "app.api-key")
-    String apiKey;
+    Optional<String> apiKey;
+
+    // The plain key had no quota before the hashed keys came, it only gets one when it is configured
+    @Inject
+    @ConfigProperty(name = "app.api-key.writes-per-second")
+    Optional<Double> apiKeyWritesPerSecond;
+
+    @Inject
+    @ConfigProperty(name = "app.api-key.burst")
+    Optional<Integer> apiKeyBurst;
+
+    // Entries of sha256-hex[:writes-per-second[:burst]]
+    @Inject
+    @ConfigProperty(name = "app.api-keys")
+    Optional<List<String>> apiKeyHashes;
+
+    @Inject
+    @ConfigProperty(name = "app.rate-limit.writes-per-second", defaultValue = "50")
+    double writesPerSecond;
+
+    @Inject
+    @ConfigProperty(name = "app.rate-limit.burst", defaultValue = "100")
+    int burst;
+
+    @Inject
+    MeterRegistry registry;
+
+    // Stands for a key without a quota, never asked for a token
+    private static final TokenBucket UNLIMITED = new TokenBucket(1, 1);
+
+    // SHA-256 of a key to its write quota
+    private final Map<ByteBuffer, TokenBucket> keys = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        apiKey.ifPresent(key -> keys.put(ByteBuffer.wrap(sha256(key)),
+                apiKeyWritesPerSecond.isPresent() || apiKeyBurst.isPresent()
+                        ? new TokenBucket(apiKeyWritesPerSecond.orElse(writesPerSecond), apiKeyBurst.orElse(burst))
+                        : UNLIMITED));
+
+        for (String entry : apiKeyHashes.orElse(List.of())) {
+            String[] parts = entry.trim().split(":");
+            double rate = parts.length > 1 ? Double.parseDouble(parts[1]) : writesPerSecond;
+            int keyBurst = parts.length > 2 ? Integer.parseInt(parts[2]) : burst;
+            keys.put(ByteBuffer.wrap(HexFormat.of().parseHex(parts[0])), new TokenBucket(rate, keyBurst));
+        }
+    }
 
     @Override
     public void filter(ContainerRequestContext requestContext) throws IOException {
-        String path = requestContext.getUriInfo().getPath();
-        String method = requestContext.getMethod().toUpperCase();
-
-        if (path.startsWith("/notes") &&  (method.equals("DELETE") || method.equals("POST") || method.equals("PUT"))) {
-            String header = requestContext.getHeaderString(API_KEY_HEADER);
-            if (header == null || !header.equals(apiKey)) {
-                ErrorResponse error = new ErrorResponse("Missing or invalid API key", 401);
-                requestContext.abortWith(
-                        Response.status(Response.Status.UNAUTHORIZED)
-                                .entity(error)
-                                .type("application/json")
-                                .build()
-                );
-            }
+        // Every write endpoint is a POST, PUT or DELETE under /notes, the only resource. Reads leave
+        // right here, before the timer, so they allocate nothing
+        String method = requestContext.getMethod();
+        if (!HttpMethod.POST.equals(method) && !HttpMethod.PUT.equals(method) && !HttpMethod.DELETE.equals(method)) {
+            return;
+        }
+
+        Timer.Sample sample = Timer.start(registry);
+        String result = check(requestContext);
+        sample.stop(Timer.builder("notes.auth")
+                .description("Time spent checking API keys")
+                .tag("result", result)
+                .register(registry));
+    }
+
+    // Returns accepted, rejected for a missing or unknown key, or limited when the key is over its quota
+    private String check(ContainerRequestContext requestContext) {
+        String header = requestContext.getHeaderString(API_KEY_HEADER);
+        TokenBucket bucket = header != null ? keys.get(ByteBuffer.wrap(sha256(header))) : null;
+        if (bucket == null) {
+            requestContext.abortWith(error(Response.Status.UNAUTHORIZED, "Missing or invalid API key").build());
+            return "rejected";
+        }
+
+        long wait = bucket == UNLIMITED ? 0 : bucket.tryAcquire(System.nanoTime());
+        if (wait > 0) {
+            // Whole seconds, rounded up so a client retrying on time finds a token
+            long retryAfter = Math.max(1, (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            requestContext.abortWith(error(Response.Status.TOO_MANY_REQUESTS, "Write rate limit exceeded for this API key")
+                    .header(HttpHeaders.RETRY_AFTER, retryAfter)
+                    .build());
+            return "limited";
+        }
+        return "accepted";
+    }
+
+    private static Response.ResponseBuilder error(Response.Status status, String message) {
+        return Response.status(status)
+                .entity(new ErrorResponse(message, status.getStatusCode()))
+                .type("application/json");
+    }
+
+    private static byte[] sha256(String key) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
     }
 }
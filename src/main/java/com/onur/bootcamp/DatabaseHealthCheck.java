@@ -16,7 +16,7 @@ public class DatabaseHealthCheck implements HealthCheck {
     @Override
     public HealthCheckResponse call() {
         try {
-            noteService.getLatestNote();
+            noteService.ping();
 
             return HealthCheckResponse.up("notes-api: NoteService DB Readiness");
         } catch (Exception e) {
@@ -15,7 +15,12 @@ public class GlobalExceptionMapper implements ExceptionMapper<WebApplicationExce
                 ex.getMessage() != null ? ex.getMessage() : "Unknown error",
                 status
         );
-        return Response.status(status)
+        // Keeps headers such as Retry-After that came with the exception's response
+        Response.ResponseBuilder response = Response.status(status);
+        if (ex.getResponse() != null) {
+            response.replaceAll(ex.getResponse().getHeaders());
+        }
+        return response
                 .entity(error)
                 .type(MediaType.APPLICATION_JSON)
                 .build();
@@ -0,0 +1,254 @@
+package com.onur.bootcamp;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.query.Query;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// The default NoteStore, H2 through Hibernate. Writes join the caller's transaction. Typed so that only NoteStores picks it
+@ApplicationScoped
+@Typed(JpaNoteStore.class)
+public class JpaNoteStore implements NoteStore {
+    @Inject
+    EntityManager em;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    NoteQueries queries;
+
+    @Inject
+    @ConfigProperty(name = "quarkus.hibernate-orm.jdbc.statement-batch-size", defaultValue = "50")
+    int batchSize;
+
+    @Inject
+    @ConfigProperty(name = "app.export.fetch-size", defaultValue = "500")
+    int exportFetchSize;
+
+    @Override
+    public Note find(int id) {
+        Note n = em.find(Note.class, id);
+        return n != null ? n.copy() : null;
+    }
+
+    @Override
+    public Note latest() {
+        List<Note> notes = em.createQuery("SELECT n FROM Note n ORDER BY n.id DESC", Note.class)
+                .setMaxResults(1)
+                .getResultList();
+        return notes.isEmpty() ? null : notes.get(0).copy();
+    }
+
+    @Override
+    public List<Note> list(NoteSort sort, Urgency urgency, String title, Set<Integer> titleIds, NoteCursor after,
+                           int offset, int size) {
+        TypedQuery<Note> query = em.createNamedQuery(
+                queries.listQuery(sort, titleMode(title, titleIds), urgency != null, after != null), Note.class);
+        return page(query, sort, urgency, title, titleIds, after, offset, size);
+    }
+
+    // Reads only the requested columns, no entity enters the persistence context
+    @Override
+    public List<NoteView> listViews(NoteFields fields, NoteSort sort, Urgency urgency, String title,
+                                    Set<Integer> titleIds, NoteCursor after, int offset, int size) {
+        TypedQuery<Tuple> query = em.createQuery(
+                NoteQueries.jpql(fields, sort, titleMode(title, titleIds), urgency != null, after != null), Tuple.class);
+        List<Tuple> rows = page(query, sort, urgency, title, titleIds, after, offset, size);
+
+        List<NoteView> views = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            views.add(fields.view(row, sort));
+        }
+        return views;
+    }
+
+    private static int titleMode(String title, Set<Integer> titleIds) {
+        return titleIds != null ? NoteQueries.TITLE_IDS_AND_LIKE
+                : title != null ? NoteQueries.TITLE_LIKE
+                : NoteQueries.TITLE_NONE;
+    }
+
+    private static <T> List<T> page(TypedQuery<T> query, NoteSort sort, Urgency urgency, String title,
+                                    Set<Integer> titleIds, NoteCursor after, int offset, int size) {
+        if (titleIds != null) {
+            query.setParameter("titleIds", titleIds);
+        }
+
+        if (title != null) {
+            query.setParameter("title", "%" + title.toLowerCase(Locale.ROOT) + "%");
+        }
+
+        if (urgency != null) {
+            query.setParameter("urgency", urgency);
+        }
+
+        if (after != null) {
+            query.setParameter("afterId", after.getId());
+            if ("urgency".equals(sort.getField())) {
+                query.setParameter("afterKey", Urgency.valueOf(after.getKey()));
+            } else if (!"id".equals(sort.getField())) {
+                query.setParameter("afterKey", after.getKey());
+            }
+        }
+
+        return query.setFirstResult(after != null ? 0 : offset).setMaxResults(size).getResultList();
+    }
+
+    @Override
+    public long count(Urgency urgency, String title, Set<Integer> titleIds) {
+        // The index ids are exact, the LIKE is only needed when it declined
+        String jpql = titleIds != null
+                ? "SELECT COUNT(n) FROM Note n WHERE n.id IN :titleIds"
+                : "SELECT COUNT(n) FROM Note n WHERE n.titleLower like :title";
+        if (urgency != null) {
+            jpql += " AND n.urgency = :urgency";
+        }
+
+        TypedQuery<Long> query = em.createQuery(jpql, Long.class);
+        if (titleIds != null) {
+            query.setParameter("titleIds", titleIds);
+        } else {
+            query.setParameter("title", "%" + title.toLowerCase(Locale.ROOT) + "%");
+        }
+        if (urgency != null) {
+            query.setParameter("urgency", urgency);
+        }
+        return query.getSingleResult();
+    }
+
+    @Override
+    public Map<Urgency, Long> countByUrgency() {
+        Map<Urgency, Long> counts = new HashMap<>();
+        em.createQuery("SELECT n.urgency, COUNT(n) FROM Note n GROUP BY n.urgency", Object[].class)
+                .getResultStream()
+                .forEach(row -> counts.put((Urgency) row[0], (Long) row[1]));
+        return counts;
+    }
+
+    /*
+     * A stateless session keeps no persistence context and H2's lazy execution returns rows as they are
+     * read instead of materialising the result, so memory stays flat and the first rows arrive before the
+     * query has finished.
+     */
+    @Override
+    public void stream(Urgency urgency, String title, Consumer<Note> consumer) {
+        String jpql = "SELECT n FROM Note n WHERE 1=1";
+
+        if (title != null) {
+            jpql += " AND n.titleLower like :title";
+        }
+
+        if (urgency != null) {
+            jpql += " AND n.urgency = :urgency";
+        }
+
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            setLazyQueryExecution(session, true);
+            try {
+                Query<Note> query = session.createQuery(jpql + " ORDER BY n.id", Note.class)
+                        .setFetchSize(exportFetchSize);
+
+                if (title != null) {
+                    query.setParameter("title", "%" + title.toLowerCase(Locale.ROOT) + "%");
+                }
+
+                if (urgency != null) {
+                    query.setParameter("urgency", urgency);
+                }
+
+                try (ScrollableResults<Note> results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+                    while (results.next()) {
+                        consumer.accept(results.get());
+                    }
+                }
+            } finally {
+                // The connection goes back to the pool, do not leak the setting to other queries
+                setLazyQueryExecution(session, false);
+            }
+        }
+    }
+
+    private static void setLazyQueryExecution(StatelessSession session, boolean enabled) {
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET LAZY_QUERY_EXECUTION " + enabled);
+            }
+        });
+    }
+
+    // Flushed right away, otherwise the insert would only run at commit
+    @Override
+    public void create(Note note) {
+        em.persist(note);
+        em.flush();
+    }
+
+    // Flushes every JDBC batch to keep the persistence context small
+    @Override
+    public void createAll(List<Note> notes) {
+        for (int i = 0; i < notes.size(); i++) {
+            em.persist(notes.get(i));
+
+            if ((i + 1) % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+    }
+
+    @Override
+    public NoteEvent update(int id, NoteUpdateRequest incoming, Integer expectedVersion) {
+        Note n = em.find(Note.class, id); // n is now a managed entity
+        if (n == null) return null;
+        NoteStore.checkVersion(n, expectedVersion);
+        Urgency previousUrgency = n.getUrgency();
+        incoming.applyTo(n);
+
+        flushChecked(); // bumps the version before it is published
+        return NoteEvent.updated(n, previousUrgency);
+    }
+
+    @Override
+    public NoteEvent delete(int id, Integer expectedVersion) {
+        Note n = em.find(Note.class, id);
+        if (n == null) return null;
+        NoteStore.checkVersion(n, expectedVersion);
+        em.remove(n);
+        flushChecked();
+        return NoteEvent.deleted(n);
+    }
+
+    // A concurrent write that committed after our read surfaces here as a version conflict
+    private void flushChecked() {
+        try {
+            em.flush();
+        } catch (OptimisticLockException e) {
+            throw new StaleNoteException("Note has been modified");
+        }
+    }
+
+    @Override
+    public void ping() {
+        em.createNativeQuery("SELECT 1").getSingleResult();
+    }
+}
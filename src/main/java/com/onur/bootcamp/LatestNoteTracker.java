@@ -0,0 +1,73 @@
+package com.onur.bootcamp;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the note with the highest id in memory so /notes/latest does not query the database.
+ * Ids only grow, so a committed create is always the newest note. The database is asked again
+ * only before the first lookup and after the latest note is deleted.
+ */
+@ApplicationScoped
+public class LatestNoteTracker {
+    private static final State UNKNOWN = new State(null, false, 0);
+
+    private final AtomicReference<State> latest = new AtomicReference<>(UNKNOWN);
+
+    // Every event moves to a new generation, a load only installs its note when none happened meanwhile
+    private static class State {
+        // null with known set means the table is known to be empty
+        final Note note;
+        final boolean known;
+        final long generation;
+
+        State(Note note, boolean known, long generation) {
+            this.note = note;
+            this.known = known;
+            this.generation = generation;
+        }
+    }
+
+    // The returned note is shared, callers must not modify it
+    public Note get(Supplier<Note> loader) {
+        State seen = latest.get();
+        if (seen.known) return seen.note;
+
+        Note loaded = loader.get();
+        // An update or delete that committed while loading may already be missing from the loaded note,
+        // it is only kept when no event arrived since the load started
+        latest.compareAndSet(seen, new State(loaded, true, seen.generation));
+        State result = latest.get();
+        return result.known ? result.note : loaded;
+    }
+
+    // The tracked note without loading, ifUnknown when it has to come from the database first
+    public Note getOrElse(Note ifUnknown) {
+        State current = latest.get();
+        return current.known ? current.note : ifUnknown;
+    }
+
+    void onNoteEvent(@Observes(during = TransactionPhase.AFTER_SUCCESS) NoteEvent event) {
+        Note note = event.getNote();
+        latest.updateAndGet(current -> {
+            long generation = current.generation + 1;
+            return switch (event.getType()) {
+                case CREATED -> (!current.known || current.note == null || note.getId() > current.note.getId())
+                        ? new State(note, true, generation)
+                        : new State(current.note, true, generation);
+                case UPDATED -> new State(isSameNote(current, note) ? note : current.note, current.known, generation);
+                case DELETED -> isSameNote(current, note)
+                        ? new State(null, false, generation)
+                        : new State(current.note, current.known, generation);
+            };
+        });
+    }
+
+    private static boolean isSameNote(State current, Note note) {
+        return current.known && current.note != null && current.note.getId().equals(note.getId());
+    }
+}
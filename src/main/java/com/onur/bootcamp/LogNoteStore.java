@@ -0,0 +1,779 @@
+package com.onur.bootcamp;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * NoteStore keeping notes in an append-only log file mapped into memory, selected with app.store=log.
+ * Every create, update and delete appends a record, an in-memory index maps each id to its latest record,
+ * which reads decode straight from the mapping. Writes are serialized by one lock, reads take none.
+ *
+ * A record is its payload length, a CRC32C of flags and payload, the flags and the payload. The records
+ * of one transaction, or of one call outside of one, form a group and only the last one carries COMMIT, so
+ * a batch is stored whole or not at all.
+ * At startup the log is replayed up to the end of the last complete group; whatever follows, a torn write
+ * or a group cut short by a crash, is wiped. With app.store.log.sync a call returns only after its records
+ * were forced to disk, otherwise they survive a crash of the process but not of the machine.
+ *
+ * Changes made in a transaction are held back and written right before it commits, so others never see
+ * them early and a rolled back transaction leaves nothing behind. Until then no other write may change the
+ * same notes, it fails with a StaleNoteException like a version conflict of the JPA store. Later writes of
+ * the transaction build on its earlier ones, its reads do not see them.
+ *
+ * Updated and deleted notes leave their old records behind. Once those make up more than the garbage ratio
+ * of the log, a background thread copies the live records to a new file and atomically renames it over
+ * the log. Writes wait for that, reads keep going on the old mapping.
+ *
+ * Lists by id walk the index in order. Other sorts, and filters on the title, decode every candidate and
+ * keep the requested window in a heap, so they cost a scan of the notes.
+ */
+@ApplicationScoped
+@Typed(LogNoteStore.class)
+public class LogNoteStore implements NoteStore {
+    private static final int MAGIC = 0x4E4F5445; // "NOTE"
+    private static final int FORMAT = 1;
+    // Magic, format, next id at the time the file was written
+    private static final int FILE_HEADER = 12;
+    // Payload length, checksum, flags
+    private static final int RECORD_HEADER = 9;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte COMMIT = 0x40;
+    private static final Urgency[] URGENCIES = Urgency.values();
+    private static final Logger LOG = Logger.getLogger(LogNoteStore.class);
+
+    @Inject
+    @ConfigProperty(name = "app.store.log.path", defaultValue = "target/notes.log")
+    Path path;
+
+    // The file grows by doubling from here, up to 2 GB
+    @Inject
+    @ConfigProperty(name = "app.store.log.initial-size", defaultValue = "16777216")
+    int initialSize;
+
+    @Inject
+    @ConfigProperty(name = "app.store.log.sync", defaultValue = "true")
+    boolean sync;
+
+    @Inject
+    @ConfigProperty(name = "app.store.log.compaction-interval", defaultValue = "1m")
+    Duration compactionInterval;
+
+    @Inject
+    @ConfigProperty(name = "app.store.log.compaction-garbage-ratio", defaultValue = "0.5")
+    double compactionGarbageRatio;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    TransactionSynchronizationRegistry transactions;
+
+    private final ConcurrentSkipListMap<Integer, Slot> index = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Notes with changes of a transaction not written yet, guarded by writeLock
+    private final Map<Integer, Pending> claims = new HashMap<>();
+
+    // Guarded by writeLock, volatile for ping
+    private volatile FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+    private int nextId;
+    private long garbageBytes;
+
+    private ScheduledExecutorService compactor;
+    private Counter compactions;
+    private Counter compactionFailures;
+
+    // Where the latest record of a note is, with its urgency so urgency filters skip it without decoding
+    private static class Slot {
+        final MappedByteBuffer buffer; // the mapping it was written to, stays valid after a remap or compaction
+        final int position;
+        final int length; // including the record header
+        final Urgency urgency;
+
+        Slot(MappedByteBuffer buffer, int position, int length, Urgency urgency) {
+            this.buffer = buffer;
+            this.position = position;
+            this.length = length;
+            this.urgency = urgency;
+        }
+    }
+
+    // Changes not written yet, of a transaction or of a single call outside of one
+    private static class Pending {
+        final boolean deferred;
+        final List<Integer> ids = new ArrayList<>();
+        final List<Note> notes = new ArrayList<>(); // null for a deletion
+        // Latest state of every note changed so far, null once deleted
+        final Map<Integer, Note> changed = new HashMap<>();
+
+        Pending(boolean deferred) {
+            this.deferred = deferred;
+        }
+
+        void add(int id, Note note) {
+            Note copy = note != null ? note.copy() : null;
+            ids.add(id);
+            notes.add(copy);
+            changed.put(id, copy);
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        try {
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open note log " + path, e);
+        }
+
+        compactions = Counter.builder("notes.store.compactions")
+                .description("Compactions of the note log")
+                .register(registry);
+        compactionFailures = Counter.builder("notes.store.compaction.failures")
+                .description("Compactions of the note log that failed and left the log as it was")
+                .register(registry);
+        compactor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "note-log-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = compactionInterval.toMillis();
+        compactor.scheduleWithFixedDelay(this::compactIfWorthIt, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void close() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        writeLock.lock();
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Note find(int id) {
+        Slot slot = index.get(id);
+        return slot != null ? read(slot) : null;
+    }
+
+    @Override
+    public Note latest() {
+        Map.Entry<Integer, Slot> last = index.lastEntry();
+        return last != null ? read(last.getValue()) : null;
+    }
+
+    @Override
+    public List<Note> list(NoteSort sort, Urgency urgency, String title, Set<Integer> titleIds, NoteCursor after,
+                           int offset, int size) {
+        return page(sort, urgency, title, titleIds, after, offset, size, note -> note);
+    }
+
+    @Override
+    public List<NoteView> listViews(NoteFields fields, NoteSort sort, Urgency urgency, String title,
+                                    Set<Integer> titleIds, NoteCursor after, int offset, int size) {
+        return page(sort, urgency, title, titleIds, after, offset, size, fields::view);
+    }
+
+    private <T> List<T> page(NoteSort sort, Urgency urgency, String title, Set<Integer> titleIds, NoteCursor after,
+                             int offset, int size, Function<Note, T> row) {
+        String needle = title != null ? title.toLowerCase(Locale.ROOT) : null;
+        Comparator<Note> order = order(sort);
+        Note cursor = after != null ? cursorNote(after, sort) : null;
+        List<T> page = new ArrayList<>(Math.min(size, 1000));
+        if (size == 0) return page;
+
+        // In id order the index already is the order, the page ends once it is full
+        if ("id".equals(sort.getField()) && titleIds == null) {
+            ConcurrentNavigableMap<Integer, Slot> range = sort.isAscending() ? index : index.descendingMap();
+            if (cursor != null) {
+                range = range.tailMap(cursor.getId(), false);
+            }
+            int skip = after != null ? 0 : offset;
+            for (Slot slot : range.values()) {
+                if (urgency != null && slot.urgency != urgency) continue;
+                Note note = read(slot);
+                if (needle != null && !note.getTitleLower().contains(needle)) continue;
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                page.add(row.apply(note));
+                if (page.size() == size) break;
+            }
+            return page;
+        }
+
+        // Worst of the kept notes on top, so each better one replaces it in log(window)
+        int window = after != null ? size : offset + size;
+        PriorityQueue<Note> best = new PriorityQueue<>(order.reversed());
+        Iterable<Integer> candidates = titleIds != null ? titleIds : index.keySet();
+        for (Integer id : candidates) {
+            Slot slot = index.get(id);
+            if (slot == null || (urgency != null && slot.urgency != urgency)) continue;
+            Note note = read(slot);
+            if (needle != null && !note.getTitleLower().contains(needle)) continue;
+            if (cursor != null && order.compare(note, cursor) <= 0) continue;
+
+            if (best.size() < window) {
+                best.add(note);
+            } else if (order.compare(note, best.peek()) < 0) {
+                best.poll();
+                best.add(note);
+            }
+        }
+
+        List<Note> ranked = new ArrayList<>(best);
+        ranked.sort(order);
+        for (int i = after != null ? 0 : offset; i < ranked.size(); i++) {
+            page.add(row.apply(ranked.get(i)));
+        }
+        return page;
+    }
+
+    // The order of the JPA list queries: sort key, then id, both in the requested direction
+    private static Comparator<Note> order(NoteSort sort) {
+        Comparator<Note> ascending = switch (sort.getField()) {
+            case "title" -> Comparator.comparing(Note::getTitleLower);
+            case "content" -> Comparator.comparing(Note::getContentLower);
+            case "urgency" -> Comparator.comparing(Note::getUrgency, Comparator.nullsFirst(Comparator.naturalOrder()));
+            default -> Comparator.comparingInt(Note::getId);
+        };
+        ascending = ascending.thenComparingInt(Note::getId);
+        return sort.isAscending() ? ascending : ascending.reversed();
+    }
+
+    // A note that sorts exactly where the cursor points
+    private static Note cursorNote(NoteCursor after, NoteSort sort) {
+        Note note = new Note();
+        note.setId(after.getId());
+        switch (sort.getField()) {
+            case "title" -> note.setTitle(after.getKey());
+            case "content" -> note.setContent(after.getKey());
+            case "urgency" -> note.setUrgency(Urgency.valueOf(after.getKey()));
+            default -> { }
+        }
+        return note;
+    }
+
+    // The ids are exact, only notes without them have to be decoded
+    @Override
+    public long count(Urgency urgency, String title, Set<Integer> titleIds) {
+        long count = 0;
+        if (titleIds != null) {
+            for (Integer id : titleIds) {
+                Slot slot = index.get(id);
+                if (slot != null && (urgency == null || slot.urgency == urgency)) count++;
+            }
+            return count;
+        }
+
+        String needle = title.toLowerCase(Locale.ROOT);
+        for (Slot slot : index.values()) {
+            if (urgency != null && slot.urgency != urgency) continue;
+            if (read(slot).getTitleLower().contains(needle)) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public Map<Urgency, Long> countByUrgency() {
+        Map<Urgency, Long> counts = new HashMap<>();
+        for (Slot slot : index.values()) {
+            counts.merge(slot.urgency, 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    @Override
+    public void stream(Urgency urgency, String title, Consumer<Note> consumer) {
+        String needle = title != null ? title.toLowerCase(Locale.ROOT) : null;
+        for (Slot slot : index.values()) {
+            if (urgency != null && slot.urgency != urgency) continue;
+            Note note = read(slot);
+            if (needle == null || note.getTitleLower().contains(needle)) {
+                consumer.accept(note);
+            }
+        }
+    }
+
+    @Override
+    public void create(Note note) {
+        createAll(List.of(note));
+    }
+
+    @Override
+    public void createAll(List<Note> notes) {
+        writeLock.lock();
+        try {
+            Pending pending = pending();
+            for (Note note : notes) {
+                note.setId(nextId++);
+                note.setVersion(0);
+                pending.add(note.getId(), note);
+            }
+            if (!pending.deferred) {
+                publish(pending);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public NoteEvent update(int id, NoteUpdateRequest incoming, Integer expectedVersion) {
+        writeLock.lock();
+        try {
+            Pending pending = pending();
+            Note note = current(pending, id);
+            if (note == null) return null;
+            NoteStore.checkVersion(note, expectedVersion);
+            Urgency previousUrgency = note.getUrgency();
+            incoming.applyTo(note);
+            note.setVersion(note.getVersion() + 1);
+
+            pending.add(id, note);
+            if (pending.deferred) {
+                claims.put(id, pending);
+            } else {
+                publish(pending);
+            }
+            return NoteEvent.updated(note, previousUrgency);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public NoteEvent delete(int id, Integer expectedVersion) {
+        writeLock.lock();
+        try {
+            Pending pending = pending();
+            Note note = current(pending, id);
+            if (note == null) return null;
+            NoteStore.checkVersion(note, expectedVersion);
+
+            pending.add(id, null);
+            if (pending.deferred) {
+                claims.put(id, pending);
+            } else {
+                publish(pending);
+            }
+            return NoteEvent.deleted(note);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /*
+     * Changes of the current transaction, written by its last callback before the commit: later ones, such
+     * as those of transactional observers, run once the notes can be read. Writing before the commit lets
+     * an I/O error roll the transaction back instead of being lost after it. The caller holds writeLock.
+     */
+    private Pending pending() {
+        if (transactions.getTransactionStatus() == Status.STATUS_NO_TRANSACTION) {
+            return new Pending(false);
+        }
+        Pending pending = (Pending) transactions.getResource(this);
+        if (pending == null) {
+            Pending changes = new Pending(true);
+            transactions.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    publish(changes);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    release(changes);
+                }
+            });
+            transactions.putResource(this, changes);
+            pending = changes;
+        }
+        return pending;
+    }
+
+    // A copy of the note as the writer sees it, null when there is none. The caller holds writeLock
+    private Note current(Pending pending, int id) {
+        Pending owner = claims.get(id);
+        if (owner != null && owner != pending) {
+            throw new StaleNoteException("Note has been modified");
+        }
+        if (pending.changed.containsKey(id)) {
+            Note changed = pending.changed.get(id);
+            return changed != null ? changed.copy() : null;
+        }
+        Slot slot = index.get(id);
+        return slot != null ? read(slot) : null;
+    }
+
+    // Writes the changes as one group and makes them visible
+    private void publish(Pending pending) {
+        if (pending.ids.isEmpty()) return;
+
+        writeLock.lock();
+        try {
+            byte[] types = new byte[pending.ids.size()];
+            byte[][] payloads = new byte[types.length][];
+            for (int i = 0; i < types.length; i++) {
+                Note note = pending.notes.get(i);
+                types[i] = note != null ? PUT : DELETE;
+                payloads[i] = note != null ? encode(note) : ByteBuffer.allocate(4).putInt(pending.ids.get(i)).array();
+            }
+
+            Slot[] slots = append(types, payloads);
+            for (int i = 0; i < types.length; i++) {
+                apply(pending.ids.get(i), types[i] == PUT ? slots[i] : null);
+            }
+            release(pending);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void release(Pending pending) {
+        writeLock.lock();
+        try {
+            for (Integer id : pending.changed.keySet()) {
+                claims.remove(id, pending);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void ping() {
+        if (!channel.isOpen()) {
+            throw new IllegalStateException("Note log is closed");
+        }
+    }
+
+    // Writes the records as one group, the caller holds writeLock
+    private Slot[] append(byte[] types, byte[][] payloads) {
+        int length = 0;
+        for (byte[] payload : payloads) {
+            length += RECORD_HEADER + payload.length;
+        }
+        ensureCapacity(length);
+
+        int start = writePosition;
+        Slot[] slots = new Slot[payloads.length];
+        for (int i = 0; i < payloads.length; i++) {
+            byte flags = i == payloads.length - 1 ? (byte) (types[i] | COMMIT) : types[i];
+            slots[i] = write(buffer, writePosition, flags, payloads[i]);
+            writePosition += slots[i].length;
+        }
+        if (sync) {
+            buffer.force(start, length);
+        }
+        return slots;
+    }
+
+    private static Slot write(MappedByteBuffer target, int position, byte flags, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(flags);
+        crc.update(payload);
+        target.putInt(position, payload.length);
+        target.putInt(position + 4, (int) crc.getValue());
+        target.put(position + 8, flags);
+        target.put(position + RECORD_HEADER, payload);
+        Urgency urgency = (flags & ~COMMIT) == PUT ? urgency(payload[8]) : null;
+        return new Slot(target, position, RECORD_HEADER + payload.length, urgency);
+    }
+
+    // Maps a larger part of the file, slots keep reading through the mapping they were written to
+    private void ensureCapacity(int length) {
+        long needed = (long) writePosition + length;
+        if (needed <= buffer.capacity()) return;
+        if (needed > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Note log is full");
+        }
+
+        long size = Math.min(Integer.MAX_VALUE, Math.max(needed, 2L * buffer.capacity()));
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            // Mapping grew the file, forcing the records later does not make the new length durable
+            if (sync) {
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // id, version, urgency ordinal or -1, title and content as length-prefixed UTF-8
+    private static byte[] encode(Note note) {
+        byte[] title = note.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] content = note.getContent().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(4 + 4 + 1 + 4 + title.length + 4 + content.length)
+                .putInt(note.getId())
+                .putInt(note.getVersion())
+                .put(note.getUrgency() != null ? (byte) note.getUrgency().ordinal() : -1)
+                .putInt(title.length).put(title)
+                .putInt(content.length).put(content)
+                .array();
+    }
+
+    private static Note read(Slot slot) {
+        MappedByteBuffer source = slot.buffer;
+        int at = slot.position + RECORD_HEADER;
+        int id = source.getInt(at);
+        int version = source.getInt(at + 4);
+        Urgency urgency = urgency(source.get(at + 8));
+        int titleLength = source.getInt(at + 9);
+        String title = string(source, at + 13, titleLength);
+        int contentAt = at + 13 + titleLength;
+        String content = string(source, contentAt + 4, source.getInt(contentAt));
+
+        Note note = new Note(id, content, title, urgency);
+        note.setVersion(version);
+        return note;
+    }
+
+    private static String string(MappedByteBuffer source, int at, int length) {
+        byte[] bytes = new byte[length];
+        source.get(at, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Urgency urgency(byte ordinal) {
+        return ordinal >= 0 ? URGENCIES[ordinal] : null;
+    }
+
+    private void open() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        // Left behind by a compaction that did not finish, the log itself is still complete
+        Files.deleteIfExists(compactedPath());
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean fresh = channel.size() == 0;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), initialSize));
+        if (fresh) {
+            writeHeader(buffer, 1);
+            buffer.force();
+            channel.force(true);
+        } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+            throw new IllegalStateException(path + " is not a note log");
+        }
+        nextId = buffer.getInt(8);
+        replay();
+    }
+
+    private static void writeHeader(MappedByteBuffer target, int nextId) {
+        target.putInt(0, MAGIC);
+        target.putInt(4, FORMAT);
+        target.putInt(8, nextId);
+    }
+
+    private void replay() {
+        List<Integer> pendingIds = new ArrayList<>();
+        List<Slot> pendingSlots = new ArrayList<>(); // null for a deletion
+        int position = FILE_HEADER;
+        int committed = FILE_HEADER;
+
+        while (position + RECORD_HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length < 4 || length > buffer.capacity() - position - RECORD_HEADER) break;
+
+            byte flags = buffer.get(position + 8);
+            CRC32C crc = new CRC32C();
+            crc.update(flags);
+            crc.update(buffer.slice(position + RECORD_HEADER, length));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) break;
+
+            int type = flags & ~COMMIT;
+            int id = buffer.getInt(position + RECORD_HEADER);
+            if (type == PUT) {
+                Urgency urgency = urgency(buffer.get(position + RECORD_HEADER + 8));
+                pendingSlots.add(new Slot(buffer, position, RECORD_HEADER + length, urgency));
+            } else if (type == DELETE) {
+                pendingSlots.add(null);
+            } else {
+                break;
+            }
+            pendingIds.add(id);
+            position += RECORD_HEADER + length;
+
+            if ((flags & COMMIT) != 0) {
+                for (int i = 0; i < pendingIds.size(); i++) {
+                    apply(pendingIds.get(i), pendingSlots.get(i));
+                }
+                pendingIds.clear();
+                pendingSlots.clear();
+                committed = position;
+            }
+        }
+
+        writePosition = committed;
+        // A crash left a torn record or an unfinished group behind, wipe it so it is never read as records
+        if (position != committed || (committed + 4 <= buffer.capacity() && buffer.getInt(committed) != 0)) {
+            byte[] zeros = new byte[8192];
+            for (int at = committed; at < buffer.capacity(); at += zeros.length) {
+                buffer.put(at, zeros, 0, Math.min(zeros.length, buffer.capacity() - at));
+            }
+            buffer.force();
+        }
+    }
+
+    // Points the index at a record read back or just written, null for a deletion. The caller holds writeLock
+    private void apply(int id, Slot slot) {
+        Slot previous = slot != null ? index.put(id, slot) : index.remove(id);
+        if (previous != null) {
+            garbageBytes += previous.length;
+        }
+        if (slot == null) {
+            garbageBytes += RECORD_HEADER + 4;
+        }
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    void compactIfWorthIt() {
+        writeLock.lock();
+        try {
+            if (garbageBytes > compactionGarbageRatio * (writePosition - FILE_HEADER)) {
+                compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            // The old log is untouched and still complete, the next run tries again. One that keeps failing,
+            // on a full disk say, lets the log grow towards its 2 GB limit, so it must not go unnoticed
+            compactionFailures.increment();
+            LOG.warn("Compaction of the note log " + path + " failed, retrying on the next run", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /*
+     * Copies the live records into a new file, each as a group of its own, and renames it over the log.
+     * The copy is forced to disk before the rename whatever app.store.log.sync says, otherwise a machine
+     * crash right after it could lose notes that were safely in the old log.
+     */
+    void compact() throws IOException {
+        writeLock.lock();
+        try {
+            long live = FILE_HEADER;
+            for (Slot slot : index.values()) {
+                live += slot.length;
+            }
+            if (live > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Note log is full");
+            }
+
+            Path compactedPath = compactedPath();
+            FileChannel compacted = FileChannel.open(compactedPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer target;
+            List<Integer> ids = new ArrayList<>(index.size());
+            List<Slot> slots = new ArrayList<>(index.size());
+            int position = FILE_HEADER;
+            try {
+                long size = Math.min(Integer.MAX_VALUE, Math.max(initialSize, 2 * live));
+                target = compacted.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                writeHeader(target, nextId);
+                for (Map.Entry<Integer, Slot> entry : index.entrySet()) {
+                    Slot slot = entry.getValue();
+                    byte[] payload = new byte[slot.length - RECORD_HEADER];
+                    slot.buffer.get(slot.position + RECORD_HEADER, payload);
+                    Slot copy = write(target, position, (byte) (PUT | COMMIT), payload);
+                    ids.add(entry.getKey());
+                    slots.add(copy);
+                    position += copy.length;
+                }
+                target.force();
+                compacted.force(true);
+                Files.move(compactedPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                compacted.close();
+                Files.deleteIfExists(compactedPath);
+                throw e;
+            }
+            syncDirectory();
+
+            channel.close(); // the old mapping stays readable for reads still holding its slots
+            channel = compacted;
+            buffer = target;
+            writePosition = position;
+            garbageBytes = 0;
+            for (int i = 0; i < ids.size(); i++) {
+                index.put(ids.get(i), slots.get(i));
+            }
+            compactions.increment();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Makes the rename itself durable, not every platform lets a directory be opened for that
+    private void syncDirectory() {
+        try (FileChannel directory = FileChannel.open(path.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Windows does not, there the rename is durable once the file system flushes its metadata
+        }
+    }
+
+    // Bytes of the log in use, records of replaced and deleted notes included
+    int size() {
+        writeLock.lock();
+        try {
+            return writePosition;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Path compactedPath() {
+        return path.resolveSibling(path.getFileName() + ".compact");
+    }
+}
@@ -1,19 +1,38 @@
 package com.onur.bootcamp;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 
+import java.util.Locale;
+
+// H2 cannot walk an index backwards, so every sortable access path has an index in each direction
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_note_urgency", columnList = "urgency, id"),
+        @Index(name = "idx_note_urgency_desc", columnList = "urgency DESC, id DESC"),
+        @Index(name = "idx_note_title_lower", columnList = "title_lower, id"),
+        @Index(name = "idx_note_title_lower_desc", columnList = "title_lower DESC, id DESC"),
+        @Index(name = "idx_note_content_lower", columnList = "content_lower, id"),
+        @Index(name = "idx_note_content_lower_desc", columnList = "content_lower DESC, id DESC"),
+        @Index(name = "idx_note_id_desc", columnList = "id DESC")
+})
 public class Note {
+    static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // A pooled sequence hands out ids ahead of the insert, which lets Hibernate batch inserts
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "note_seq")
+    @SequenceGenerator(name = "note_seq", sequenceName = "note_seq", allocationSize = ID_ALLOCATION_SIZE)
     @Schema(hidden = true)
     private Integer id;
 
     @NotBlank(message = "Content cannot be blank")
     @Size(max = 300, message = "Content must not exceed 300 characters")
+    @Column(length = 300)
     private String content;
 
     @NotBlank(message = "Title cannot be blank")
@@ -23,24 +42,67 @@ public class Note {
     @Enumerated(EnumType.ORDINAL)
     private Urgency urgency;
 
+    // Lowercased copies kept by the setters, so case-insensitive sorts and filters can use an index.
+    // Lowercasing can lengthen a string, a dotted capital I becomes an i and a combining dot, but never to more
+    // than twice its length
+    @Column(name = "title_lower", length = 100)
+    @JsonIgnore
+    @Schema(hidden = true)
+    private String titleLower;
+
+    @Column(name = "content_lower", length = 600)
+    @JsonIgnore
+    @Schema(hidden = true)
+    private String contentLower;
+
+    // Bumped by Hibernate on every update, backs the ETag of the note
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Schema(hidden = true)
+    private Integer version;
+
     public Note() {} // Quarkus needs a no-arg constructor
 
     public Note(Integer id, String content, String title, Urgency urgency) {
         this.id = id;
-        this.content = content;
-        this.title = title;
+        setContent(content);
+        setTitle(title);
         this.urgency = urgency;
     }
 
+    // Detached copy, safe to hand to other threads after the transaction is gone
+    public Note copy() {
+        Note copy = new Note(id, content, title, urgency);
+        copy.version = version;
+        return copy;
+    }
+
     public Integer getId() { return id; }
     public void setId(Integer id) { this.id = id; }
 
     public String getContent() { return content; }
-    public void setContent(String content) { this.content = content; }
+    public void setContent(String content) {
+        this.content = content;
+        this.contentLower = lower(content);
+    }
 
     public String getTitle() { return title; }
-    public void setTitle(String title) { this.title = title; }
+    public void setTitle(String title) {
+        this.title = title;
+        this.titleLower = lower(title);
+    }
 
     public Urgency getUrgency() { return urgency; }
     public void setUrgency(Urgency urgency) { this.urgency = urgency; }
+
+    // Not public, Jackson must not pick them up as properties
+    String getTitleLower() { return titleLower; }
+    String getContentLower() { return contentLower; }
+
+    public Integer getVersion() { return version; }
+    public void setVersion(Integer version) { this.version = version; }
+
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
 }
\ No newline at end of file
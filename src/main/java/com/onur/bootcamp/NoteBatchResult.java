@@ -0,0 +1,53 @@
+package com.onur.bootcamp;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Per-item outcome of a batch create")
+public class NoteBatchResult {
+    @Schema(description = "Number of created notes", example = "2")
+    public int created;
+    @Schema(description = "Number of rejected notes", example = "1")
+    public int rejected;
+    @Schema(description = "One entry per submitted note, in submission order")
+    public List<Item> items;
+
+    public NoteBatchResult(List<Item> items) {
+        this.items = items;
+        for (Item item : items) {
+            if (item.id != null) created++;
+            else rejected++;
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Outcome of a single note")
+    public static class Item {
+        @Schema(description = "Position of the note in the request (0-based)", example = "0")
+        public int index;
+        @Schema(description = "201 when created, 400 when rejected", example = "201")
+        public int status;
+        @Schema(description = "ID of the created note", example = "42")
+        public Integer id;
+        @Schema(description = "Why the note was rejected", example = "Content cannot be blank")
+        public String error;
+
+        public static Item created(int index, int id) {
+            Item item = new Item();
+            item.index = index;
+            item.status = 201;
+            item.id = id;
+            return item;
+        }
+
+        public static Item rejected(int index, String error) {
+            Item item = new Item();
+            item.index = index;
+            item.status = 400;
+            item.error = error;
+            return item;
+        }
+    }
+}
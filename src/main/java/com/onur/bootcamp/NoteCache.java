@@ -0,0 +1,101 @@
+package com.onur.bootcamp;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntFunction;
+
+/**
+ * Bounded read-through cache of notes by id, evicting by size and by age.
+ * Cached notes are detached copies shared between requests, callers must not modify them.
+ *
+ * Entries are futures so that a load runs outside the cache's map locks. A loader running inside
+ * ConcurrentHashMap.compute would block on JDBC while holding a monitor, pinning its virtual thread.
+ */
+@ApplicationScoped
+public class NoteCache {
+    @Inject
+    @ConfigProperty(name = "app.note-cache.max-size", defaultValue = "10000")
+    long maxSize;
+
+    @Inject
+    @ConfigProperty(name = "app.note-cache.expire-after-write", defaultValue = "5m")
+    Duration expireAfterWrite;
+
+    @Inject
+    MeterRegistry registry;
+
+    private AsyncCache<Integer, Note> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(registry, cache, "notes");
+    }
+
+    /*
+     * The first caller of a missing id installs an empty future and runs the loader on its own thread,
+     * concurrent callers of the same id wait for that future. Missing notes are not cached, Caffeine
+     * drops futures completed with null, so the loader runs again on the next lookup.
+     */
+    public Note get(int id, IntFunction<Note> loader) {
+        CompletableFuture<Note> pending = new CompletableFuture<>();
+        CompletableFuture<Note> entry = cache.get(id, (key, executor) -> pending);
+        if (entry == pending) {
+            try {
+                pending.complete(loader.apply(id));
+            } catch (Throwable e) {
+                // Errors too, an incomplete future would block every later caller of this id. The failed
+                // future leaves the cache before waiters are woken, a retry loads again
+                cache.asMap().remove(id, pending);
+                pending.completeExceptionally(e);
+            }
+        }
+
+        try {
+            return entry.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Error error) throw error;
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // Lookup without loading or waiting. Counts a hit but no miss, a caller that gets null falls back to get
+    public Note getIfPresent(int id) {
+        CompletableFuture<Note> entry = cache.asMap().get(id);
+        if (entry == null || !entry.isDone() || entry.isCompletedExceptionally()) return null;
+        CompletableFuture<Note> counted = cache.getIfPresent(id);
+        return counted != null ? counted.getNow(null) : null;
+    }
+
+    /*
+     * Runs after commit. The invalidation also drops a load of the same id that is still in flight,
+     * so a reader that fetched the old row before the commit can not put it back: its future is no
+     * longer in the cache when it completes.
+     */
+    void onNoteEvent(@Observes(during = TransactionPhase.AFTER_SUCCESS) NoteEvent event) {
+        if (event.getType() != NoteEvent.Type.CREATED) {
+            cache.synchronous().invalidate(event.getNote().getId());
+        }
+    }
+
+    public NoteCacheStats stats() {
+        var stats = cache.synchronous().stats();
+        return new NoteCacheStats(cache.synchronous().estimatedSize(), stats.hitCount(), stats.missCount(), stats.evictionCount());
+    }
+}
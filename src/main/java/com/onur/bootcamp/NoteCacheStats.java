@@ -0,0 +1,22 @@
+package com.onur.bootcamp;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(description = "Counters of the note by id cache")
+public class NoteCacheStats {
+    @Schema(description = "Approximate number of cached notes", example = "420")
+    public long size;
+    @Schema(description = "Lookups answered from the cache", example = "9800")
+    public long hits;
+    @Schema(description = "Lookups that went to the database", example = "200")
+    public long misses;
+    @Schema(description = "Notes evicted for size or age", example = "12")
+    public long evictions;
+
+    public NoteCacheStats(long size, long hits, long misses, long evictions) {
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+}
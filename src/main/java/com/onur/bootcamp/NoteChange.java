@@ -0,0 +1,24 @@
+package com.onur.bootcamp;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "A committed note change, sent on the /notes/changes stream")
+public class NoteChange {
+    // SSE event names, "reset" tells a resuming client that changes were missed and it has to reload
+    static final String RESET = "reset";
+
+    @Schema(description = "Position in the change feed since startup, sent in the event id", example = "17")
+    public long sequence;
+    @Schema(description = "created, updated, deleted or reset", example = "updated")
+    public String type;
+    @Schema(description = "The note as written, or as it was right before deletion. Absent on reset")
+    public Note note;
+
+    NoteChange(long sequence, String type, Note note) {
+        this.sequence = sequence;
+        this.type = type;
+        this.note = note;
+    }
+}
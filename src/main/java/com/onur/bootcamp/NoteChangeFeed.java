@@ -0,0 +1,167 @@
+package com.onur.bootcamp;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
+import io.smallrye.mutiny.subscription.BackPressureStrategy;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Committed note changes as a stream. Every change gets the next sequence number and is kept in a bounded
+ * log, so a client that reconnects with the last event id it saw gets what it missed, then live changes.
+ * Event ids carry the startup epoch of NoteRevision, an id from before a restart gets a reset.
+ *
+ * Appending and subscribing share one lock, which keeps replayed and live changes in order without gaps
+ * or duplicates. Emitting only queues, clients are written to from the worker pool, so nothing waits on a
+ * client while holding the lock. A client with more than max-buffered live changes not yet taken is
+ * disconnected and resumes from the log when it reconnects.
+ */
+@ApplicationScoped
+public class NoteChangeFeed {
+    @Inject
+    NoteRevision noteRevision;
+
+    @Inject
+    @ConfigProperty(name = "app.changes.log-size", defaultValue = "1000")
+    int logSize;
+
+    @Inject
+    @ConfigProperty(name = "app.changes.max-buffered", defaultValue = "256")
+    int maxBuffered;
+
+    private final Object lock = new Object();
+    private final Set<Subscriber> subscribers = new HashSet<>();
+    private ArrayDeque<NoteChange> log;
+    private long sequence;
+
+    private static class Subscriber {
+        final MultiEmitter<? super NoteChange> emitter;
+        // Changes of the replay, they come first and do not count against max-buffered
+        final long replayed;
+        // Guarded by lock
+        long emitted;
+        final AtomicLong delivered;
+
+        Subscriber(MultiEmitter<? super NoteChange> emitter, long replayed, AtomicLong delivered) {
+            this.emitter = emitter;
+            this.replayed = replayed;
+            this.emitted = replayed;
+            this.delivered = delivered;
+        }
+
+        long lagging() {
+            return emitted - Math.max(delivered.get(), replayed);
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        log = new ArrayDeque<>(logSize);
+    }
+
+    void onNoteEvent(@Observes(during = TransactionPhase.AFTER_SUCCESS) NoteEvent event) {
+        String type = event.getType().name().toLowerCase(Locale.ROOT);
+        List<Subscriber> lagging = null;
+        synchronized (lock) {
+            NoteChange change = new NoteChange(++sequence, type, event.getNote());
+            if (log.size() == logSize) {
+                log.removeFirst();
+            }
+            log.addLast(change);
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.lagging() >= maxBuffered) {
+                    if (lagging == null) lagging = new ArrayList<>();
+                    lagging.add(subscriber);
+                    continue;
+                }
+                subscriber.emitted++;
+                subscriber.emitter.emit(change);
+            }
+            if (lagging != null) {
+                lagging.forEach(subscribers::remove);
+            }
+        }
+
+        if (lagging != null) {
+            for (Subscriber subscriber : lagging) {
+                subscriber.emitter.fail(new BackPressureFailure("More than " + maxBuffered + " changes behind"));
+            }
+        }
+    }
+
+    // Event id of a change, its sequence within this process' epoch
+    public String eventId(NoteChange change) {
+        return noteRevision.epoch() + "-" + change.sequence;
+    }
+
+    /*
+     * Live changes, preceded by the logged ones after lastEventId when it is given. When changes after it
+     * are no longer logged, or it is from before a restart, a reset comes first instead of the replay.
+     */
+    public Multi<NoteChange> changes(String lastEventId) {
+        Long lastSeen = lastSeen(lastEventId);
+        return Multi.createFrom().deferred(() -> {
+            AtomicLong delivered = new AtomicLong();
+            return Multi.createFrom().<NoteChange>emitter(emitter -> {
+                        Subscriber subscriber;
+                        synchronized (lock) {
+                            long replayed = lastSeen != null ? replay(emitter, lastSeen) : 0;
+                            subscriber = new Subscriber(emitter, replayed, delivered);
+                            subscribers.add(subscriber);
+                        }
+                        emitter.onTermination(() -> {
+                            synchronized (lock) {
+                                subscribers.remove(subscriber);
+                            }
+                        });
+                    }, BackPressureStrategy.BUFFER)
+                    .emitOn(Infrastructure.getDefaultWorkerPool())
+                    .invoke(delivered::incrementAndGet);
+        });
+    }
+
+    // Sequence of an event id of this epoch, -1 for any other id, which gets a reset
+    private Long lastSeen(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) return null;
+
+        String prefix = noteRevision.epoch() + "-";
+        String id = lastEventId.trim();
+        if (!id.startsWith(prefix)) return -1L;
+        try {
+            return Long.parseLong(id.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    // Returns how many changes were emitted
+    private long replay(MultiEmitter<? super NoteChange> emitter, long lastSeen) {
+        long oldest = log.isEmpty() ? sequence + 1 : log.getFirst().sequence;
+        if (lastSeen > sequence || lastSeen < oldest - 1) {
+            emitter.emit(new NoteChange(sequence, NoteChange.RESET, null));
+            return 1;
+        }
+        long replayed = 0;
+        for (NoteChange change : log) {
+            if (change.sequence > lastSeen) {
+                emitter.emit(change);
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+}
@@ -0,0 +1,131 @@
+package com.onur.bootcamp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Number of notes per urgency, counted once at startup by the NoteStore and then kept up to date
+ * from committed note events, so reading it never touches the store.
+ *
+ * Counts under a title filter cannot be kept that way, they are counted by the store and cached
+ * for a short while instead. Within that time a filtered total may lag behind recent writes.
+ */
+@ApplicationScoped
+public class NoteCounts {
+    private static final Urgency[] URGENCIES = Urgency.values();
+
+    private final AtomicLongArray byUrgency = new AtomicLongArray(URGENCIES.length);
+    // Also counts notes without an urgency, which only older rows can have
+    private final AtomicLong total = new AtomicLong();
+
+    @Inject
+    NoteStore store;
+
+    @Inject
+    @ConfigProperty(name = "app.note-counts.filtered.max-size", defaultValue = "1000")
+    long filteredMaxSize;
+
+    @Inject
+    @ConfigProperty(name = "app.note-counts.filtered.expire-after-write", defaultValue = "5s")
+    Duration filteredExpireAfterWrite;
+
+    @Inject
+    MeterRegistry registry;
+
+    // Keyed by urgency and lowercased title fragment
+    private Cache<String, Long> filtered;
+
+    @PostConstruct
+    void init() {
+        filtered = Caffeine.newBuilder()
+                .maximumSize(filteredMaxSize)
+                .expireAfterWrite(filteredExpireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, filtered, "note-counts");
+    }
+
+    @Transactional
+    void onStart(@Observes StartupEvent event) {
+        store.countByUrgency().forEach((urgency, count) -> {
+            if (urgency != null) {
+                byUrgency.addAndGet(urgency.ordinal(), count);
+            }
+            total.addAndGet(count);
+        });
+    }
+
+    void onNoteEvent(@Observes(during = TransactionPhase.AFTER_SUCCESS) NoteEvent event) {
+        Urgency urgency = event.getNote().getUrgency();
+        switch (event.getType()) {
+            case CREATED -> {
+                add(urgency, 1);
+                total.incrementAndGet();
+            }
+            case UPDATED -> {
+                if (event.getPreviousUrgency() != urgency) {
+                    add(event.getPreviousUrgency(), -1);
+                    add(urgency, 1);
+                }
+            }
+            case DELETED -> {
+                add(event.getPreviousUrgency(), -1);
+                total.decrementAndGet();
+            }
+        }
+    }
+
+    private void add(Urgency urgency, int delta) {
+        if (urgency != null) {
+            byUrgency.addAndGet(urgency.ordinal(), delta);
+        }
+    }
+
+    public long total() {
+        return total.get();
+    }
+
+    public long count(Urgency urgency) {
+        return byUrgency.get(urgency.ordinal());
+    }
+
+    /*
+     * Cached count of a title filter, the counter runs on a miss. Not Cache.get with a loader: that would run
+     * the query inside a map lock. Concurrent misses of the same key may each count, the results agree anyway.
+     */
+    public long filtered(Urgency urgency, String title, LongSupplier counter) {
+        String key = urgency + ":" + title.toLowerCase(Locale.ROOT);
+        Long cached = filtered.getIfPresent(key);
+        if (cached != null) return cached;
+
+        long count = counter.getAsLong();
+        filtered.put(key, count);
+        return count;
+    }
+
+    public NoteStats stats() {
+        Map<Urgency, Long> counts = new EnumMap<>(Urgency.class);
+        for (Urgency urgency : URGENCIES) {
+            counts.put(urgency, count(urgency));
+        }
+        return new NoteStats(total(), counts);
+    }
+}
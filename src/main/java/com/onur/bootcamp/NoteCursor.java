@@ -0,0 +1,83 @@
+package com.onur.bootcamp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Keyset pagination token. Holds the sort key and id of the last note of a page,
+ * the next page starts right after that pair instead of skipping rows with an offset.
+ * Clients only see it as an opaque url-safe string.
+ */
+public class NoteCursor {
+    private final String sortField;
+    private final String sortOrder;
+    private final int id;
+    private final String key; // null when sorting by id
+
+    private NoteCursor(String sortField, String sortOrder, int id, String key) {
+        this.sortField = sortField;
+        this.sortOrder = sortOrder;
+        this.id = id;
+        this.key = key;
+    }
+
+    public static NoteCursor after(Note last, NoteSort sort) {
+        String key = switch (sort.getField()) {
+            case "title" -> last.getTitle().toLowerCase(Locale.ROOT);
+            case "content" -> last.getContent().toLowerCase(Locale.ROOT);
+            case "urgency" -> last.getUrgency().name();
+            default -> null;
+        };
+        return new NoteCursor(sort.getField(), sort.getOrder(), last.getId(), key);
+    }
+
+    public static NoteCursor decode(String token) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        // field,order,id[,key] - the key goes last since titles and contents may contain commas
+        String[] parts = raw.split(",", 4);
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        int id;
+        try {
+            id = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        String key = parts.length > 3 ? parts[3] : null;
+        if (!"id".equals(parts[0]) && key == null) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if ("urgency".equals(parts[0])) {
+            try {
+                Urgency.valueOf(key);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        return new NoteCursor(parts[0], parts[1], id, key);
+    }
+
+    public String encode() {
+        String raw = sortField + "," + sortOrder + "," + id + (key != null ? "," + key : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean matches(NoteSort sort) {
+        return sortField.equals(sort.getField()) && sortOrder.equals(sort.getOrder());
+    }
+
+    public int getId() { return id; }
+
+    public String getKey() { return key; }
+}
@@ -0,0 +1,34 @@
+package com.onur.bootcamp;
+
+import jakarta.ws.rs.core.EntityTag;
+
+// Strong entity tags of single notes, built from id and version
+public class NoteETags {
+    private NoteETags() {}
+
+    public static EntityTag of(Note note) {
+        return new EntityTag(note.getId() + "-" + note.getVersion());
+    }
+
+    /**
+     * Version an If-Match header asks for. Returns null when any version is fine (no header or "*")
+     * and -1 when no strong tag of this note is listed, which never matches.
+     */
+    public static Integer expectedVersion(String ifMatch, int id) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) return null;
+
+        String prefix = "\"" + id + "-";
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            // If-Match uses strong comparison, weak tags never match
+            if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+                try {
+                    return Integer.parseInt(tag.substring(prefix.length(), tag.length() - 1));
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+}
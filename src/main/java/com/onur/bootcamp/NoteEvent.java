@@ -0,0 +1,39 @@
+package com.onur.bootcamp;
+
+/**
+ * Fired by NoteService for every note mutation. Observers that keep derived in-memory state
+ * listen with {@code @Observes(during = TransactionPhase.AFTER_SUCCESS)} so they only see committed changes.
+ */
+public class NoteEvent {
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private final Type type;
+    private final Note note;
+    private final Urgency previousUrgency;
+
+    private NoteEvent(Type type, Note note, Urgency previousUrgency) {
+        this.type = type;
+        this.note = note;
+        this.previousUrgency = previousUrgency;
+    }
+
+    public static NoteEvent created(Note note) {
+        return new NoteEvent(Type.CREATED, note.copy(), null);
+    }
+
+    public static NoteEvent updated(Note note, Urgency previousUrgency) {
+        return new NoteEvent(Type.UPDATED, note.copy(), previousUrgency);
+    }
+
+    public static NoteEvent deleted(Note note) {
+        return new NoteEvent(Type.DELETED, note.copy(), note.getUrgency());
+    }
+
+    public Type getType() { return type; }
+
+    // Snapshot of the note as it was written, or as it was right before deletion
+    public Note getNote() { return note; }
+
+    // Urgency before the change, null for created notes
+    public Urgency getPreviousUrgency() { return previousUrgency; }
+}
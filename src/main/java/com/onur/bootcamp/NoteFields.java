@@ -0,0 +1,83 @@
+package com.onur.bootcamp;
+
+import jakarta.persistence.Tuple;
+
+// Parsed form of the "id,title,..." fields parameter, the note properties a projected list returns
+public class NoteFields {
+    private static final String[] FIELDS = {"id", "title", "content", "urgency", "version"};
+    private static final int ID = 1;
+
+    private final int requested; // bit i is set when FIELDS[i] was asked for
+
+    private NoteFields(int requested) {
+        this.requested = requested;
+    }
+
+    // null when no field is given, unknown names are rejected
+    public static NoteFields parse(String fields) {
+        if (fields == null) return null;
+
+        int requested = 0;
+        int start = 0;
+        while (start <= fields.length()) {
+            int end = fields.indexOf(',', start);
+            if (end < 0) end = fields.length();
+
+            String name = fields.substring(start, end).trim();
+            if (!name.isEmpty()) {
+                requested |= 1 << indexOf(name);
+            }
+            start = end + 1;
+        }
+
+        return requested == 0 ? null : new NoteFields(requested);
+    }
+
+    private static int indexOf(String name) {
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (FIELDS[i].equals(name)) return i;
+        }
+        throw new IllegalArgumentException("Unknown field " + name + ", expected any of " + String.join(", ", FIELDS));
+    }
+
+    // The id and the sort field are always read, the next cursor is built from them
+    private int selected(NoteSort sort) {
+        return requested | ID | 1 << indexOf(sort.getField());
+    }
+
+    // JPQL select list of the columns read for the given sort
+    public String select(NoteSort sort) {
+        int selected = selected(sort);
+        StringBuilder select = new StringBuilder();
+        for (int i = 0; i < FIELDS.length; i++) {
+            if ((selected & 1 << i) == 0) continue;
+            if (select.length() > 0) select.append(", ");
+            select.append("n.").append(FIELDS[i]);
+        }
+        return select.toString();
+    }
+
+    // The requested fields of a note that was read whole
+    public NoteView view(Note note) {
+        return new NoteView(note, requested);
+    }
+
+    // Reads a row of the query built from select(sort), columns are in FIELDS order
+    public NoteView view(Tuple row, NoteSort sort) {
+        int selected = selected(sort);
+        Note note = new Note();
+        int column = 0;
+        for (int i = 0; i < FIELDS.length; i++) {
+            if ((selected & 1 << i) == 0) continue;
+            Object value = row.get(column++);
+            switch (FIELDS[i]) {
+                case "id" -> note.setId((Integer) value);
+                case "title" -> note.setTitle((String) value);
+                case "content" -> note.setContent((String) value);
+                case "urgency" -> note.setUrgency((Urgency) value);
+                default -> note.setVersion((Integer) value);
+            }
+        }
+        return new NoteView(note, requested);
+    }
+}
@@ -0,0 +1,151 @@
+package com.onur.bootcamp;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for single note creates. Creates arriving at the same time are queued and written by one
+ * thread in a single transaction, flushed once max-batch notes are waiting or max-delay after the first
+ * one arrived. Every commit costs a sync of the H2 file, sharing it lets write throughput grow with the
+ * number of concurrent callers. A caller's future completes only after its batch has committed.
+ */
+@ApplicationScoped
+public class NoteGroupCommitter {
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    @ConfigProperty(name = "app.group-commit.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "app.group-commit.max-batch", defaultValue = "100")
+    int maxBatch;
+
+    @Inject
+    @ConfigProperty(name = "app.group-commit.max-delay", defaultValue = "5ms")
+    Duration maxDelay;
+
+    // Creates beyond this many waiting ones fail with a RejectedExecutionException
+    @Inject
+    @ConfigProperty(name = "app.group-commit.max-queued", defaultValue = "10000")
+    int maxQueued;
+
+    private BlockingQueue<Pending> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    private static class Pending {
+        final Note note;
+        final CompletableFuture<Note> created = new CompletableFuture<>();
+
+        Pending(Note note) {
+            this.note = note;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        if (enabled) {
+            queue = new ArrayBlockingQueue<>(maxQueued);
+            running = true;
+            writer = new Thread(this::run, "note-group-commit");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (writer != null) {
+            running = false;
+            writer.interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Completes with the created note once it is committed, exceptionally when it could not be stored
+    public CompletableFuture<Note> submit(Note note) {
+        Pending pending = new Pending(note);
+        if (!running || !queue.offer(pending)) {
+            pending.created.completeExceptionally(new RejectedExecutionException("Too many notes waiting to be committed"));
+        } else if (!running && queue.remove(pending)) {
+            // Shut down between the check and the offer, the writer may have drained the queue already
+            pending.created.completeExceptionally(new RejectedExecutionException("Shutting down"));
+        }
+        return pending.created;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        try {
+            while (running) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelay.toNanos();
+                while (batch.size() < maxBatch) {
+                    // Whatever is already queued joins without waiting
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || remaining <= 0) break;
+
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                commit(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            RejectedExecutionException stopped = new RejectedExecutionException("Shutting down");
+            batch.forEach(pending -> pending.created.completeExceptionally(stopped));
+            Pending left;
+            while ((left = queue.poll()) != null) {
+                left.created.completeExceptionally(stopped);
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        List<Note> notes = new ArrayList<>(batch.size());
+        batch.forEach(pending -> notes.add(pending.note));
+
+        try {
+            noteService.createNotes(notes);
+            batch.forEach(pending -> pending.created.complete(pending.note));
+        } catch (OverloadedException e) {
+            // Shed before anything was written. Retrying one by one would turn the shed call into a call per note
+            batch.forEach(pending -> pending.created.completeExceptionally(e));
+        } catch (RuntimeException e) {
+            // One failing note must not fail the others, retry one transaction each
+            for (Pending pending : batch) {
+                Note note = pending.note;
+                // Ids and versions handed out by the rolled back transaction do not exist
+                note.setId(null);
+                note.setVersion(null);
+                try {
+                    noteService.createNote(note);
+                    pending.created.complete(note);
+                } catch (RuntimeException single) {
+                    pending.created.completeExceptionally(single);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.onur.bootcamp;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Schema(description = "Outcome of an NDJSON import")
+public class NoteImportSummary {
+    @Schema(description = "Number of imported notes", example = "999998")
+    public long accepted;
+    @Schema(description = "Number of rejected lines", example = "2")
+    public long rejected;
+    @Schema(description = "Rejected lines, capped to keep the response small")
+    public List<LineError> errors = new ArrayList<>();
+    @Schema(description = "True when more lines were rejected than listed in errors", example = "false")
+    public boolean errorsTruncated;
+
+    void reject(long line, String error, int maxReportedErrors) {
+        rejected++;
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new LineError(line, error));
+        } else {
+            errorsTruncated = true;
+        }
+    }
+
+    @Schema(description = "Why a line was rejected")
+    public static class LineError {
+        @Schema(description = "Line number in the upload (1-based)", example = "17")
+        public long line;
+        @Schema(description = "Reason", example = "Title cannot be blank")
+        public String error;
+
+        public LineError(long line, String error) {
+            this.line = line;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.onur.bootcamp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Imports newline-delimited JSON notes. The body is read line by line and valid notes are
+ * committed in chunks, so only one chunk is ever held in memory. The next chunk is not read
+ * before the previous one is stored, which slows the upload down to the pace of the database.
+ */
+@ApplicationScoped
+public class NoteImporter {
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    @ConfigProperty(name = "app.import.chunk-size", defaultValue = "500")
+    int chunkSize;
+
+    @Inject
+    @ConfigProperty(name = "app.import.max-line-length", defaultValue = "65536")
+    int maxLineLength;
+
+    @Inject
+    @ConfigProperty(name = "app.import.max-reported-errors", defaultValue = "1000")
+    int maxReportedErrors;
+
+    public NoteImportSummary importNotes(InputStream body) throws IOException {
+        ObjectReader noteReader = objectMapper.readerFor(Note.class);
+        LineReader lines = new LineReader(new InputStreamReader(body, StandardCharsets.UTF_8), maxLineLength);
+        NoteImportSummary summary = new NoteImportSummary();
+
+        List<Note> chunk = new ArrayList<>(chunkSize);
+        List<Long> chunkLines = new ArrayList<>(chunkSize);
+
+        String line;
+        while ((line = lines.next()) != null) {
+            long lineNumber = lines.lineNumber();
+            if (lines.truncated()) {
+                summary.reject(lineNumber, "Line exceeds " + maxLineLength + " characters", maxReportedErrors);
+                continue;
+            }
+            if (line.isBlank()) continue;
+
+            Note note;
+            try {
+                note = noteReader.readValue(line);
+            } catch (JsonProcessingException e) {
+                summary.reject(lineNumber, "Malformed note: " + e.getOriginalMessage(), maxReportedErrors);
+                continue;
+            }
+
+            String error = noteService.validationError(note);
+            if (error != null) {
+                summary.reject(lineNumber, error, maxReportedErrors);
+                continue;
+            }
+
+            chunk.add(note);
+            chunkLines.add(lineNumber);
+            if (chunk.size() == chunkSize) {
+                store(chunk, chunkLines, summary);
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            store(chunk, chunkLines, summary);
+        }
+
+        return summary;
+    }
+
+    private void store(List<Note> chunk, List<Long> chunkLines, NoteImportSummary summary) {
+        try {
+            noteService.createNotes(chunk);
+            summary.accepted += chunk.size();
+        } catch (OverloadedException e) {
+            // Shed by admission control before anything was written, the lines can be sent again
+            for (Long lineNumber : chunkLines) {
+                summary.reject(lineNumber, "Database is busy, retry later", maxReportedErrors);
+            }
+        } catch (RuntimeException e) {
+            // The chunk was rolled back as a whole, report every line of it
+            for (Long lineNumber : chunkLines) {
+                summary.reject(lineNumber, "Could not be stored", maxReportedErrors);
+            }
+        }
+        chunk.clear();
+        chunkLines.clear();
+    }
+
+    // readLine with an upper bound, the rest of an overlong line is skipped instead of buffered
+    static class LineReader {
+        private final Reader reader;
+        private final int maxLength;
+        private final StringBuilder buffer = new StringBuilder();
+        private long lineNumber;
+        private boolean truncated;
+
+        LineReader(Reader reader, int maxLength) {
+            this.reader = new BufferedReader(reader);
+            this.maxLength = maxLength;
+        }
+
+        String next() throws IOException {
+            buffer.setLength(0);
+            truncated = false;
+
+            int c = reader.read();
+            if (c == -1) return null;
+
+            while (c != -1 && c != '\n') {
+                if (buffer.length() < maxLength) {
+                    buffer.append((char) c);
+                } else {
+                    truncated = true;
+                }
+                c = reader.read();
+            }
+
+            lineNumber++;
+            int end = buffer.length();
+            if (end > 0 && buffer.charAt(end - 1) == '\r') buffer.setLength(end - 1);
+            return buffer.toString();
+        }
+
+        long lineNumber() { return lineNumber; }
+
+        boolean truncated() { return truncated; }
+    }
+}
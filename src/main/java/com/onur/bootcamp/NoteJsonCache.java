@@ -0,0 +1,122 @@
+package com.onur.bootcamp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * JSON bytes of the hottest responses, so Jackson does not encode the same note again for every read.
+ * Single notes are kept per id and only served for the version they were encoded from, an entry left
+ * behind by a concurrent update is never sent for the newer note. The default first page of the list
+ * is kept for one list revision.
+ */
+@ApplicationScoped
+public class NoteJsonCache {
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    @ConfigProperty(name = "app.json-cache.max-bytes", defaultValue = "16777216")
+    long maxBytes;
+
+    private ObjectWriter noteWriter;
+    private ObjectWriter listWriter;
+    private Cache<Integer, Encoded> notes;
+    private final AtomicReference<Page> firstPage = new AtomicReference<>();
+
+    private static class Encoded {
+        final Integer version;
+        final byte[] json;
+
+        Encoded(Integer version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+
+    // The default first page as encoded for a list revision, with the cursor continuing after it
+    public static class Page {
+        final String revision;
+        final byte[] json;
+        final String nextCursor;
+
+        Page(String revision, byte[] json, String nextCursor) {
+            this.revision = revision;
+            this.json = json;
+            this.nextCursor = nextCursor;
+        }
+
+        public byte[] json() { return json; }
+
+        public String nextCursor() { return nextCursor; }
+    }
+
+    @PostConstruct
+    void init() {
+        noteWriter = objectMapper.writerFor(Note.class);
+        listWriter = objectMapper.writerFor(new TypeReference<List<Note>>() {});
+        notes = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<Integer, Encoded>weigher((id, encoded) -> encoded.json.length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, notes, "note-json");
+    }
+
+    // The note as JSON, encoded only when this version of it has not been encoded before
+    public byte[] encode(Note note) {
+        Encoded cached = notes.getIfPresent(note.getId());
+        if (cached != null && Objects.equals(cached.version, note.getVersion())) {
+            return cached.json;
+        }
+
+        byte[] json = write(noteWriter, note);
+        notes.put(note.getId(), new Encoded(note.getVersion(), json));
+        return json;
+    }
+
+    // The cached default first page, null when the list changed since it was encoded
+    public Page firstPage(String revision) {
+        Page page = firstPage.get();
+        return page != null && page.revision.equals(revision) ? page : null;
+    }
+
+    public Page putFirstPage(String revision, List<Note> notes, String nextCursor) {
+        Page page = new Page(revision, write(listWriter, notes), nextCursor);
+        firstPage.set(page);
+        return page;
+    }
+
+    void onNoteEvent(@Observes(during = TransactionPhase.AFTER_SUCCESS) NoteEvent event) {
+        if (event.getType() != NoteEvent.Type.CREATED) {
+            notes.invalidate(event.getNote().getId());
+        }
+    }
+
+    private static byte[] write(ObjectWriter writer, Object value) {
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
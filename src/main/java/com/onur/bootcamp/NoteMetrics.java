@@ -0,0 +1,108 @@
+package com.onur.bootcamp;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.function.Supplier;
+
+/**
+ * Meters of the note queries, exported with the HTTP server metrics at /q/metrics.
+ * Tag values come from small fixed sets (query names, filter shapes, sort fields),
+ * never from user input, so the number of time series stays bounded.
+ */
+@ApplicationScoped
+public class NoteMetrics {
+    static final String QUERY_TIMER = "notes.query";
+    static final String QUERY_ROWS = "notes.query.rows";
+
+    // Prometheus drops series whose tag keys differ from the first one of the same name, queries without a shape get "none"
+    private static final Tags NO_SHAPE = Tags.of("filter", "none", "title_lookup", "none", "sort", "none", "paging", "none");
+
+    // Empty results land in the first bucket, page sizes are not capped so +Inf catches anything above 1000
+    private static final double[] ROW_BUCKETS = {1, 5, 10, 25, 50, 100, 250, 1000};
+
+    @Inject
+    MeterRegistry registry;
+
+    // Static, the registry is built with this filter and cannot wait for a NoteMetrics instance
+    // Percentile histograms for the request and query timers, so p99 can be aggregated across instances
+    @Produces
+    @Singleton
+    static MeterFilter latencyHistograms() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (id.getName().equals("http.server.requests") || id.getName().equals(QUERY_TIMER)) {
+                    return DistributionStatisticConfig.builder()
+                            .percentilesHistogram(true)
+                            .build()
+                            .merge(config);
+                }
+                return config;
+            }
+        };
+    }
+
+    // Runs the query and records its duration, the outcome tag names the exception when it failed
+    public <T> T timeQuery(String query, Tags tags, Supplier<T> body) {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "success";
+        try {
+            return body.get();
+        } catch (RuntimeException e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(QUERY_TIMER)
+                    .description("Time spent in note queries")
+                    .tags(NO_SHAPE.and(tags))
+                    .tag("query", query)
+                    .tag("outcome", outcome)
+                    .register(registry));
+        }
+    }
+
+    public void timeQuery(String query, Tags tags, Runnable body) {
+        timeQuery(query, tags, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    public void recordRows(String query, Tags tags, int rows) {
+        DistributionSummary.builder(QUERY_ROWS)
+                .description("Rows returned by note queries")
+                .baseUnit("rows")
+                .tags(NO_SHAPE.and(tags))
+                .tag("query", query)
+                .serviceLevelObjectives(ROW_BUCKETS)
+                .register(registry)
+                .record(rows);
+    }
+
+    /*
+     * filter: which of title and urgency are set, e.g. "title+urgency" or "none".
+     * title_lookup: how the title filter was answered, "index" for an id list from TitleTrigramIndex,
+     * "scan" when the index declined and LIKE runs over the whole table, "empty" when no title matched.
+     */
+    public static Tags filterTags(Urgency urgency, boolean hasTitle, String titleLookup) {
+        String filter = hasTitle && urgency != null ? "title+urgency"
+                : hasTitle ? "title"
+                : urgency != null ? "urgency"
+                : "none";
+        return Tags.of("filter", filter, "title_lookup", titleLookup);
+    }
+
+    public static Tags sortTags(NoteSort sort, boolean cursor) {
+        return Tags.of("sort", sort.getField() + "," + sort.getOrder().toLowerCase(), "paging", cursor ? "cursor" : "offset");
+    }
+}
@@ -0,0 +1,173 @@
+package com.onur.bootcamp;
+
+import io.quarkus.runtime.Startup;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Locale;
+
+/**
+ * Named queries for every shape of the note list: sort field and order, how the title filter is applied,
+ * urgency filter and cursor. They are parsed and validated once at startup, a request only computes the
+ * index of its shape and fetches the name from an array.
+ */
+@ApplicationScoped
+@Startup
+public class NoteQueries {
+    // How the title filter narrows the rows
+    static final int TITLE_NONE = 0;
+    static final int TITLE_LIKE = 1;
+    static final int TITLE_IDS_AND_LIKE = 2; // id list from TitleTrigramIndex, LIKE drops notes renamed since
+
+    private static final int TITLE_MODES = 3;
+
+    private final String[] names = new String[NoteSort.COUNT * TITLE_MODES * 2 * 2];
+
+    @Inject
+    EntityManagerFactory emf;
+
+    @Inject
+    EntityManager em;
+
+    // Only the JPA store reads the table, with any other one it is neither prepared for nor touched
+    @Inject
+    @ConfigProperty(name = "app.store", defaultValue = "jpa")
+    String store;
+
+    // Runs before any request, outside of a transaction or request context, so with its own EntityManager
+    @PostConstruct
+    void init() {
+        if (!used()) return;
+        try (EntityManager em = emf.createEntityManager()) {
+            register(em);
+        }
+    }
+
+    // Rows written before the lowercase columns existed would otherwise drop out of title filters and sorts
+    @Transactional
+    void backfill(@Observes StartupEvent event) {
+        if (!used()) return;
+        // Schema updates never widen a column, older databases kept the default length for content and
+        // lowercase copies not sized for lengthening
+        widen("content", 300);
+        widen("title_lower", 100);
+        widen("content_lower", 600);
+        em.createQuery("UPDATE Note n SET n.titleLower = LOWER(n.title), n.contentLower = LOWER(n.content)"
+                        + " WHERE n.titleLower IS NULL OR n.contentLower IS NULL")
+                .executeUpdate();
+        // Rows from before the version column have none, they would get "id-null" ETags and fail their first update
+        em.createQuery("UPDATE Note n SET n.version = 0 WHERE n.version IS NULL").executeUpdate();
+    }
+
+    private boolean used() {
+        return "jpa".equals(store);
+    }
+
+    private void widen(String column, int length) {
+        Number current = (Number) em.createNativeQuery("SELECT CHARACTER_MAXIMUM_LENGTH FROM INFORMATION_SCHEMA.COLUMNS"
+                        + " WHERE TABLE_NAME = 'NOTE' AND COLUMN_NAME = ?1")
+                .setParameter(1, column.toUpperCase(Locale.ROOT))
+                .getSingleResult();
+        if (current.longValue() < length) {
+            em.createNativeQuery("ALTER TABLE Note ALTER COLUMN " + column + " SET DATA TYPE VARCHAR(" + length + ")")
+                    .executeUpdate();
+        }
+    }
+
+    // Databases created before the id sequence hold identity ids the new sequence would hand out again,
+    // so it is moved above them. The pooled optimizer uses the block of ids ending at the value it fetches
+    @Transactional
+    void seedIdSequence(@Observes StartupEvent event) {
+        if (!used()) return;
+        Integer maxId = em.createQuery("SELECT MAX(n.id) FROM Note n", Integer.class).getSingleResult();
+        if (maxId == null) return;
+
+        Number next = (Number) em.createNativeQuery("SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES"
+                        + " WHERE SEQUENCE_NAME = 'NOTE_SEQ'")
+                .getSingleResult();
+        if (next.longValue() - Note.ID_ALLOCATION_SIZE < maxId) {
+            em.createNativeQuery("ALTER SEQUENCE note_seq RESTART WITH " + ((long) maxId + Note.ID_ALLOCATION_SIZE))
+                    .executeUpdate();
+        }
+    }
+
+    private void register(EntityManager em) {
+        for (int sort = 0; sort < NoteSort.COUNT; sort++) {
+            for (int title = 0; title < TITLE_MODES; title++) {
+                for (int urgency = 0; urgency < 2; urgency++) {
+                    for (int cursor = 0; cursor < 2; cursor++) {
+                        NoteSort noteSort = NoteSort.of(sort);
+                        int index = index(noteSort, title, urgency == 1, cursor == 1);
+                        String name = "Note.list." + noteSort.getField() + "." + noteSort.getOrder() + "." + index;
+                        emf.addNamedQuery(name, em.createQuery(jpql(noteSort, title, urgency == 1, cursor == 1), Note.class));
+                        names[index] = name;
+                    }
+                }
+            }
+        }
+    }
+
+    public String listQuery(NoteSort sort, int titleMode, boolean urgency, boolean cursor) {
+        return names[index(sort, titleMode, urgency, cursor)];
+    }
+
+    private static int index(NoteSort sort, int titleMode, boolean urgency, boolean cursor) {
+        return ((sort.index() * TITLE_MODES + titleMode) * 2 + (urgency ? 1 : 0)) * 2 + (cursor ? 1 : 0);
+    }
+
+    static String jpql(NoteSort sort, int titleMode, boolean urgency, boolean cursor) {
+        return jpql("n", sort, titleMode, urgency, cursor);
+    }
+
+    /*
+     * Same filters and order with a column list instead of the entity. These are not registered up front,
+     * there is one per combination of fields, Hibernate's query plan cache keeps the ones in use parsed.
+     */
+    static String jpql(NoteFields fields, NoteSort sort, int titleMode, boolean urgency, boolean cursor) {
+        return jpql(fields.select(sort), sort, titleMode, urgency, cursor);
+    }
+
+    private static String jpql(String select, NoteSort sort, int titleMode, boolean urgency, boolean cursor) {
+        String jpql = "SELECT " + select + " FROM Note n WHERE 1=1";
+
+        if (titleMode == TITLE_IDS_AND_LIKE) {
+            jpql += " AND n.id IN :titleIds";
+        }
+
+        if (titleMode != TITLE_NONE) {
+            jpql += " AND n.titleLower like :title";
+        }
+
+        if (urgency) {
+            jpql += " AND n.urgency = :urgency";
+        }
+
+        String comparator = sort.isAscending() ? ">" : "<";
+        boolean sortById = "id".equals(sort.getField());
+
+        if (cursor) {
+            if (sortById) {
+                jpql += " AND n.id " + comparator + " :afterId";
+            } else {
+                String sortExpression = sort.sortExpression();
+                jpql += " AND (" + sortExpression + " " + comparator + " :afterKey"
+                        + " OR (" + sortExpression + " = :afterKey AND n.id " + comparator + " :afterId))";
+            }
+        }
+
+        // id breaks ties so that every row has a unique position for the cursor
+        String orderBy = " ORDER BY " + sort.sortExpression() + " " + sort.getOrder();
+        if (!sortById) {
+            orderBy += ", n.id " + sort.getOrder();
+        }
+
+        return jpql + orderBy;
+    }
+}
@@ -5,11 +5,29 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.*;
 import jakarta.validation.Valid;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.common.annotation.NonBlocking;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.enums.ParameterIn;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
@@ -22,16 +40,54 @@ import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 
 @Path("/notes")
 public class NoteResource {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    static final String NDJSON = "application/x-ndjson";
+
     @Inject
     NoteService noteService;
 
+    @Inject
+    ReactiveNoteService reactiveNotes;
+
+    @Inject
+    NoteImporter noteImporter;
+
+    @Inject
+    NoteChangeFeed noteChanges;
+
+    @Inject
+    NoteJsonCache noteJson;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    @ConfigProperty(name = "app.batch.max-size", defaultValue = "1000")
+    int maxBatchSize;
+
     @GET
     @APIResponse(responseCode = "200", description = "All notes returned according to given parameters if there are any.")
+    @APIResponse(
+            responseCode = "400",
+            description = "Invalid cursor or unknown field provided.",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                            @ExampleObject(
+                                    name = "BadRequest",
+                                    summary = "Invalid cursor",
+                                    value = "{\"error\": \"Invalid cursor\", \"status\": 400}"
+                            )
+                    }
+            )
+    )
     @Operation(
             summary = "List notes",
-            description = "Returns paginated, sorted, and filtered list of notes."
+            description = "Returns paginated, sorted, and filtered list of notes. Full pages carry an X-Next-Cursor header for keyset pagination, every page an X-Total-Count header with the number of matching notes. With fields only the listed properties of each note are read and returned."
     )
-    public Response getAllNote(
+    public Uni<Response> getAllNote(
             @Parameter(
                     description = "Page number (1-based)"
             ) @QueryParam("page") @DefaultValue("1") int page,
@@ -47,12 +103,142 @@ public class NoteResource {
             ) @QueryParam("urgency") Urgency urgency,
             @Parameter(
                     description = "Title filter, partial match available"
-            ) @QueryParam("title") String title
+            ) @QueryParam("title") String title,
+            @Parameter(
+                    description = "Cursor from the X-Next-Cursor header of the previous page, page is ignored when given"
+            ) @QueryParam("after") String after,
+            @Parameter(
+                    description = "Comma separated fields to return (id, title, content, urgency, version), all when omitted"
+            ) @QueryParam("fields") String fields,
+            @Context Request request
 
     ) {
-        List<Note> allNotes = noteService.getAllNotes(page, size, sort, urgency, title);
+        // Read before the query, a write committing meanwhile can only make the tag older than the body
+        String revision = noteService.getRevision();
+        EntityTag listTag = new EntityTag(revision, true);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(listTag);
+        if (notModified != null) {
+            return Uni.createFrom().item(notModified.build());
+        }
+
+        NoteCursor cursor;
+        NoteFields noteFields;
+        try {
+            cursor = (after != null && !after.isBlank()) ? NoteCursor.decode(after) : null;
+            noteFields = NoteFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException(e.getMessage(), Response.Status.BAD_REQUEST);
+        }
+
+        // The page clients open with, answered from its encoded bytes until the next write
+        boolean firstPage = page == 1 && size == 10 && "urgency,desc".equals(sort)
+                && urgency == null && title == null && cursor == null && noteFields == null;
+        if (firstPage) {
+            NoteJsonCache.Page cached = noteJson.firstPage(revision);
+            if (cached != null) {
+                return Uni.createFrom().item(listResponse(cached.json(), cached.nextCursor(),
+                        noteService.countNotes(null, null), listTag));
+            }
+        }
+
+        // Counted after the page, not alongside it, both share the request's EntityManager.
+        // Without a title filter the count is answered from memory.
+        Uni<Long> total = unavailableWhenBusy(reactiveNotes.countNotes(urgency, title));
 
-        return Response.ok(allNotes).build();
+        if (noteFields != null) {
+            return badRequestOnInvalidArgument(reactiveNotes.getNoteViews(page, size, sort, urgency, title, cursor, noteFields))
+                    .chain(views -> total.map(count -> {
+                        Note last = views.isEmpty() ? null : views.get(views.size() - 1).note;
+                        return listResponse(views, nextCursor(views, last, size, sort), count, listTag);
+                    }));
+        }
+
+        return badRequestOnInvalidArgument(reactiveNotes.getAllNotes(page, size, sort, urgency, title, cursor))
+                .chain(allNotes -> total.map(count -> {
+                    Note last = allNotes.isEmpty() ? null : allNotes.get(allNotes.size() - 1);
+                    String next = nextCursor(allNotes, last, size, sort);
+                    Object body = firstPage ? noteJson.putFirstPage(revision, allNotes, next).json() : allNotes;
+                    return listResponse(body, next, count, listTag);
+                }));
+    }
+
+    private static <T> Uni<T> badRequestOnInvalidArgument(Uni<T> result) {
+        return unavailableWhenBusy(result)
+                .onFailure(IllegalArgumentException.class)
+                .transform(e -> new WebApplicationException(e.getMessage(), Response.Status.BAD_REQUEST));
+    }
+
+    // A full page may have a successor, hand out the cursor that continues after its last note
+    private static String nextCursor(List<?> rows, Note last, int size, String sort) {
+        return last != null && rows.size() == size ? NoteCursor.after(last, NoteSort.parse(sort)).encode() : null;
+    }
+
+    // The body is a list of notes or views, or the JSON bytes of one
+    private static Response listResponse(Object body, String nextCursor, long total, EntityTag listTag) {
+        Response.ResponseBuilder response = Response.ok(body, MediaType.APPLICATION_JSON_TYPE)
+                .tag(listTag)
+                .header(TOTAL_COUNT_HEADER, total);
+        if (nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.build();
+    }
+
+    @GET
+    @Operation(
+            summary = "Export notes",
+            description = "Streams every note matching the filters as newline-delimited JSON, in ID order."
+    )
+    @APIResponse(responseCode = "200", description = "One JSON note per line.")
+    @Path("/export")
+    @Produces(NDJSON)
+    public Response exportNotes(
+            @Parameter(
+                    description = "Urgency filter: one of LOW, MEDIUM, HIGH.",
+                    schema = @Schema(implementation = Urgency.class)
+            ) @QueryParam("urgency") Urgency urgency,
+            @Parameter(
+                    description = "Title filter, partial match available"
+            ) @QueryParam("title") String title
+    ) {
+        ObjectWriter writer = objectMapper.writerFor(Note.class);
+
+        StreamingOutput body = output -> {
+            try {
+                noteService.streamNotes(urgency, title, new NdjsonLines(output, writer));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+
+        return Response.ok(body).build();
+    }
+
+    // Writes each note as one JSON line, a failed write (client gone) stops the export
+    private static class NdjsonLines implements Consumer<Note> {
+        private final OutputStream output;
+        private final ObjectWriter writer;
+        private boolean first = true;
+
+        NdjsonLines(OutputStream output, ObjectWriter writer) {
+            this.output = output;
+            this.writer = writer;
+        }
+
+        @Override
+        public void accept(Note note) {
+            try {
+                output.write(writer.writeValueAsBytes(note));
+                output.write('\n');
+                // Push the first line out right away, later ones leave when the response buffer fills
+                if (first) {
+                    output.flush();
+                    first = false;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 
     @GET
@@ -77,14 +263,109 @@ public class NoteResource {
             )
     )
     @Path("/latest")
-    public Response getLatestNote() {
-        Note latest = noteService.getLatestNote();
+    public Uni<Response> getLatestNote(@Context Request request) {
+        return unavailableWhenBusy(reactiveNotes.getLatestNote()).map(latest -> {
+            if (latest == null) {
+                throw new WebApplicationException("Note not found", Response.Status.NOT_FOUND);
+            }
 
-        if (latest == null) {
-            throw new WebApplicationException("Note not found", Response.Status.NOT_FOUND);
+            return okUnlessNotModified(request, latest);
+        });
+    }
+
+    @GET
+    @Operation(
+            summary = "Note cache counters",
+            description = "Returns size, hit, miss and eviction counts of the note by ID cache."
+    )
+    @APIResponse(responseCode = "200", description = "Cache counters returned.")
+    @Path("/cache/stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    @NonBlocking // in-memory counters, no reason to leave the I/O thread
+    public Response getCacheStats() {
+        return Response.ok(noteService.getCacheStats()).build();
+    }
+
+    @GET
+    @Operation(
+            summary = "Stream note changes",
+            description = "Server-sent events for every committed create, update and delete, named after the change and carrying its startup epoch and sequence as the event id. "
+                    + "A client reconnecting with Last-Event-ID first receives the changes it missed, or a reset event when they are no longer known."
+    )
+    @APIResponse(responseCode = "200", description = "Stream of note changes.")
+    @Path("/changes")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public Multi<OutboundSseEvent> getChanges(
+            @Parameter(
+                    description = "Event id of the last change received, set by EventSource when it reconnects"
+            ) @HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId,
+            @Context Sse sse
+    ) {
+        return noteChanges.changes(lastEventId).map(change -> sse.newEventBuilder()
+                .id(noteChanges.eventId(change))
+                .name(change.type)
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(NoteChange.class, change)
+                .build());
+    }
+
+    @GET
+    @Operation(
+            summary = "Note counts",
+            description = "Returns the number of notes in total and per urgency."
+    )
+    @APIResponse(responseCode = "200", description = "Counts returned.")
+    @Path("/stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    @NonBlocking // counters kept in memory, no reason to leave the I/O thread
+    public Response getStats() {
+        return Response.ok(noteService.getStats()).build();
+    }
+
+    @GET
+    @Operation(
+            summary = "Search notes",
+            description = "Returns the notes whose title or content contains any word of the query, most relevant first (BM25, title words weigh double). Every page carries an X-Total-Count header with the number of matching notes."
+    )
+    @APIResponse(responseCode = "200", description = "Matching notes with their score, possibly none.")
+    @APIResponse(
+            responseCode = "400",
+            description = "Query without words, or a page beyond the searchable window.",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                            @ExampleObject(
+                                    name = "BadRequest",
+                                    summary = "Empty query",
+                                    value = "{\"error\": \"Query must contain at least one word\", \"status\": 400}"
+                            )
+                    }
+            )
+    )
+    @Path("/search")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> searchNotes(
+            @Parameter(
+                    description = "Words to search for in titles and contents, case insensitive"
+            ) @QueryParam("q") String q,
+            @Parameter(
+                    description = "Page number (1-based)"
+            ) @QueryParam("page") @DefaultValue("1") int page,
+            @Parameter(
+                    description = "Page size"
+            ) @QueryParam("size") @DefaultValue("10") int size,
+            @Context Request request
+    ) {
+        // Results only change with the notes, the list revision tags them as well
+        EntityTag searchTag = new EntityTag(noteService.getRevision(), true);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(searchTag);
+        if (notModified != null) {
+            return Uni.createFrom().item(notModified.build());
         }
 
-        return Response.ok(latest).build();
+        return badRequestOnInvalidArgument(reactiveNotes.search(q, page, size))
+                .map(result -> listResponse(result.hits(), null, result.total(), searchTag));
     }
 
     @GET
@@ -125,20 +406,31 @@ public class NoteResource {
     )
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getNoteWithId(
+    public Uni<Response> getNoteWithId(
         @Parameter(
             description = "Target note ID"
-        ) @PathParam("id") int id
+        ) @PathParam("id") int id,
+        @Context Request request
     ) {
         if (id <= 0) {
             throw new WebApplicationException("Id must be greater than 0", Response.Status.BAD_REQUEST);
         }
 
-        Note note = noteService.getNoteById(id);
+        return unavailableWhenBusy(reactiveNotes.getNoteById(id)).map(note -> {
+            if (note != null) return okUnlessNotModified(request, note);
 
-        if (note != null) return Response.ok(note).build();
+            throw new WebApplicationException("Note not found", Response.Status.NOT_FOUND);
+        });
+    }
 
-        throw new WebApplicationException("Note not found", Response.Status.NOT_FOUND);
+    // 304 without a body when the client already holds this version of the note, otherwise its cached JSON
+    private Response okUnlessNotModified(Request request, Note note) {
+        EntityTag tag = NoteETags.of(note);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+        return Response.ok(noteJson.encode(note), MediaType.APPLICATION_JSON_TYPE).tag(tag).build();
     }
 
     @PUT
@@ -177,6 +469,21 @@ public class NoteResource {
                     }
             )
     )
+    @APIResponse(
+            responseCode = "412",
+            description = "If-Match does not match the current version of the note.",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                            @ExampleObject(
+                                    name = "PreconditionFailed",
+                                    summary = "Note changed",
+                                    value = "{\"error\": \"Note has been modified\", \"status\": 412}"
+                            )
+                    }
+            )
+    )
     @Parameter(
             description = "API key for authentication",
             in = ParameterIn.HEADER,
@@ -186,13 +493,16 @@ public class NoteResource {
     @Path("/{id}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response updateNote(
+    public Uni<Response> updateNote(
         @Parameter(
             description = "Target note ID"
         ) @PathParam("id") int id,
         @RequestBody(
                 description = "Note data to update, at least one of the content, title or urgency must be provided, given data must be non-empty."
-        ) NoteUpdateRequest update
+        ) NoteUpdateRequest update,
+        @Parameter(
+            description = "ETag of the version to update, the update fails with 412 if the note has changed since"
+        ) @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch
     ) {
         try {
             update.validate();
@@ -204,11 +514,15 @@ public class NoteResource {
             throw new WebApplicationException("Id must be greater than 0", Response.Status.BAD_REQUEST);
         }
 
-        Note updated = noteService.updateNote(id, update);
-        if (updated == null) {
-            throw new WebApplicationException("Note not found", 404);
-        }
-        return Response.ok(updated).build();
+        return unavailableWhenBusy(reactiveNotes.updateNote(id, update, NoteETags.expectedVersion(ifMatch, id)))
+                .onFailure(StaleNoteException.class)
+                .transform(e -> new WebApplicationException(e.getMessage(), Response.Status.PRECONDITION_FAILED))
+                .map(updated -> {
+                    if (updated == null) {
+                        throw new WebApplicationException("Note not found", 404);
+                    }
+                    return Response.ok(updated).tag(NoteETags.of(updated)).build();
+                });
     }
 
     @POST
@@ -240,22 +554,115 @@ public class NoteResource {
     )
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response createNote(
+    public Uni<Response> createNote(
             @RequestBody(
                     description = "Note containing title, content and urgency which is an enum value of Low, Medium and High."
             ) @Valid Note note,
             @Context UriInfo uriInfo
     ) {
-        noteService.createNote(note);
+        return unavailableWhenBusy(reactiveNotes.createNote(note)).map(created -> {
+            URI location = uriInfo.getAbsolutePathBuilder()
+                    .path(String.valueOf(created.getId()))
+                    .build();
+
+            return Response
+                    .created(location)
+                    .entity(created)
+                    .tag(NoteETags.of(created))
+                    .build();
+        });
+    }
+
+    @POST
+    @Operation(
+            summary = "Create notes in bulk",
+            description = "Validates every note like POST /notes and creates the valid ones in a single transaction. Returns the outcome of each note in submission order."
+    )
+    @APIResponse(responseCode = "200", description = "Batch processed, see the per-item results")
+    @APIResponse(
+        responseCode = "400",
+        description = "Empty, oversized or unreadable batch",
+        content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class),
+                examples = {
+                        @ExampleObject(
+                                name = "BadRequest",
+                                summary = "Empty batch",
+                                value = "{\"error\": \"At least one note must be provided\", \"status\": 400}"
+                        )
+                }
+        )
+    )
+    @Parameter(
+            description = "API key for authentication",
+            in = ParameterIn.HEADER,
+            required = true,
+            name = "X-API-Key"
+    )
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Blocking // a Uni would read and validate up to max-batch-size notes on the I/O thread
+    public Uni<Response> createNotes(
+            @RequestBody(
+                    description = "Array of notes, each with the same rules as a single create."
+            ) List<Note> notes
+    ) {
+        if (notes == null || notes.isEmpty()) {
+            throw new WebApplicationException("At least one note must be provided", Response.Status.BAD_REQUEST);
+        }
+        if (notes.size() > maxBatchSize) {
+            throw new WebApplicationException("Batch must not exceed " + maxBatchSize + " notes", Response.Status.BAD_REQUEST);
+        }
+
+        NoteBatchResult.Item[] items = new NoteBatchResult.Item[notes.size()];
+        List<Note> valid = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+
+        for (int i = 0; i < notes.size(); i++) {
+            String error = noteService.validationError(notes.get(i));
+            if (error != null) {
+                items[i] = NoteBatchResult.Item.rejected(i, error);
+            } else {
+                valid.add(notes.get(i));
+                validIndexes.add(i);
+            }
+        }
+
+        Uni<List<Note>> created = valid.isEmpty() ? Uni.createFrom().item(valid) : reactiveNotes.createNotes(valid);
+
+        return unavailableWhenBusy(created).map(persisted -> {
+            for (int i = 0; i < persisted.size(); i++) {
+                int index = validIndexes.get(i);
+                items[index] = NoteBatchResult.Item.created(index, persisted.get(i).getId());
+            }
 
-        URI location = uriInfo.getAbsolutePathBuilder()
-                .path(String.valueOf(note.getId()))
-                .build();
+            return Response.ok(new NoteBatchResult(Arrays.asList(items))).build();
+        });
+    }
 
-        return Response
-                .created(location)
-                .entity(note)
-                .build();
+    @POST
+    @Operation(
+            summary = "Import notes",
+            description = "Reads newline-delimited JSON notes, validates each line like POST /notes and commits the valid ones in chunks. Returns how many lines were accepted and why the others were rejected."
+    )
+    @APIResponse(responseCode = "200", description = "Import finished, see the summary")
+    @Parameter(
+            description = "API key for authentication",
+            in = ParameterIn.HEADER,
+            required = true,
+            name = "X-API-Key"
+    )
+    @Path("/import")
+    @Consumes({NDJSON, MediaType.TEXT_PLAIN})
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response importNotes(
+            @RequestBody(
+                    description = "One note per line, blank lines are skipped."
+            ) InputStream body
+    ) throws IOException {
+        return Response.ok(noteImporter.importNotes(body)).build();
     }
 
     @DELETE
@@ -294,6 +701,21 @@ public class NoteResource {
                 }
         )
     )
+    @APIResponse(
+            responseCode = "412",
+            description = "If-Match does not match the current version of the note.",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ErrorResponse.class),
+                    examples = {
+                            @ExampleObject(
+                                    name = "PreconditionFailed",
+                                    summary = "Note changed",
+                                    value = "{\"error\": \"Note has been modified\", \"status\": 412}"
+                            )
+                    }
+            )
+    )
     @Parameter(
             description = "API key for authentication",
             in = ParameterIn.HEADER,
@@ -302,22 +724,40 @@ public class NoteResource {
     )
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response deleteNoteById(
+    public Uni<Response> deleteNoteById(
         @Parameter(
                 description = "Target note ID"
         )
-        @PathParam("id") int id
+        @PathParam("id") int id,
+        @Parameter(
+                description = "ETag of the version to delete, the delete fails with 412 if the note has changed since"
+        ) @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch
     ) {
         if (id <= 0) {
             throw new WebApplicationException("Id must be greater than 0", Response.Status.BAD_REQUEST);
         }
 
-        boolean deleted = noteService.deleteNoteById(id);
+        return unavailableWhenBusy(reactiveNotes.deleteNoteById(id, NoteETags.expectedVersion(ifMatch, id)))
+                .onFailure(StaleNoteException.class)
+                .transform(e -> new WebApplicationException(e.getMessage(), Response.Status.PRECONDITION_FAILED))
+                .map(deleted -> {
+                    if (deleted) {
+                        return Response.noContent().build(); // 204 No Content, common for deletes
+                    } else {
+                        throw new WebApplicationException("Note not found", Response.Status.NOT_FOUND);
+                    }
+                });
+    }
 
-        if (deleted) {
-            return Response.noContent().build(); // 204 No Content, common for deletes
-        } else {
-            throw new WebApplicationException("Note not found", Response.Status.NOT_FOUND);
-        }
+    // The database executor queue is full or admission control shed the call, fail fast instead of letting the backlog grow
+    private static <T> Uni<T> unavailableWhenBusy(Uni<T> result) {
+        return result.onFailure(RejectedExecutionException.class).transform(e -> {
+            Response.ResponseBuilder response = Response.status(Response.Status.SERVICE_UNAVAILABLE);
+            if (e instanceof OverloadedException overloaded) {
+                response.header(HttpHeaders.RETRY_AFTER, overloaded.getRetryAfterSeconds());
+                return new WebApplicationException(e.getMessage(), response.build());
+            }
+            return new WebApplicationException("Too many requests waiting for the database", response.build());
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.onur.bootcamp;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Table-wide modification counter, bumped after every committed note change.
+ * List responses derive their weak ETag from it. The startup epoch keeps tags
+ * handed out before a restart from matching the fresh counter.
+ */
+@ApplicationScoped
+public class NoteRevision {
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong revision = new AtomicLong();
+
+    void onNoteEvent(@Observes(during = TransactionPhase.AFTER_SUCCESS) NoteEvent event) {
+        revision.incrementAndGet();
+    }
+
+    // Identifies this process, counters starting over on a restart are told apart by it
+    public String epoch() {
+        return epoch;
+    }
+
+    public String current() {
+        return epoch + "-" + revision.get();
+    }
+}
@@ -0,0 +1,32 @@
+package com.onur.bootcamp;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Note matching a search, with its relevance")
+public class NoteSearchHit {
+    @Schema(description = "BM25 relevance, higher is better", example = "2.71")
+    public double score;
+    public Note note;
+
+    public NoteSearchHit(double score, Note note) {
+        this.score = score;
+        this.note = note;
+    }
+
+    // One page of hits and the number of notes matching the query
+    public static class Page {
+        final List<NoteSearchHit> hits;
+        final long total;
+
+        Page(List<NoteSearchHit> hits, long total) {
+            this.hits = hits;
+            this.total = total;
+        }
+
+        public List<NoteSearchHit> hits() { return hits; }
+
+        public long total() { return total; }
+    }
+}
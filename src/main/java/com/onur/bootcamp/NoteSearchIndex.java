@@ -0,0 +1,392 @@
+package com.onur.bootcamp;
+
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory inverted index over note titles and contents, ranked with BM25. Words are runs of letters
+ * and digits, lowercased; a title word counts as often as TITLE_WEIGHT content words. Built from the
+ * NoteStore at startup and kept up to date from committed note events, like TitleTrigramIndex.
+ *
+ * Each word keeps its notes as arrays sorted by id, with the frequency and length of every note next to it.
+ * A query walks the lists of its words side by side in id order and keeps the best notes in a heap the size
+ * of the requested window, so its cost follows the number of matches, not the number of notes. Once the heap
+ * is full, words whose highest possible scores together cannot beat its worst note are no longer walked,
+ * they are only looked up for notes found through the other words (MaxScore). A query with a common word
+ * then skips most of that word's notes.
+ */
+@ApplicationScoped
+public class NoteSearchIndex {
+    private static final int TITLE_WEIGHT = 2;
+    // Longer runs are ids, hashes or garbage nobody searches for
+    private static final int MAX_WORD_LENGTH = 64;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Word to the notes holding it
+    private final Map<String, Postings> postings = new ConcurrentHashMap<>();
+    private final Map<Integer, Document> documents = new ConcurrentHashMap<>();
+    private final AtomicLong totalLength = new AtomicLong();
+
+    @Inject
+    NoteStore store;
+
+    // Deepest page window a query may ask for, paging further means the query is too broad
+    @Inject
+    @ConfigProperty(name = "app.search.max-window", defaultValue = "1000")
+    int maxWindow;
+
+    private static class Document {
+        final Map<String, Integer> words;
+        final int length;
+
+        Document(Map<String, Integer> words, int length) {
+            this.words = words;
+            this.length = length;
+        }
+    }
+
+    // Notes holding a word, sorted by id, with how often the word occurs in each and the note's length
+    private static class Postings {
+        // Guarded by this
+        private int[] ids = new int[4];
+        private int[] frequencies = new int[4];
+        private int[] lengths = new int[4];
+        private int size;
+        // Never lowered when notes go, it only has to stay an upper bound
+        private int maxFrequency;
+
+        synchronized void put(int id, int frequency, int length) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) {
+                at = -at - 1;
+                if (size == ids.length) {
+                    int capacity = size + (size >> 1);
+                    ids = Arrays.copyOf(ids, capacity);
+                    frequencies = Arrays.copyOf(frequencies, capacity);
+                    lengths = Arrays.copyOf(lengths, capacity);
+                }
+                // Ids come from a sequence, new notes are appended and nothing moves
+                System.arraycopy(ids, at, ids, at + 1, size - at);
+                System.arraycopy(frequencies, at, frequencies, at + 1, size - at);
+                System.arraycopy(lengths, at, lengths, at + 1, size - at);
+                size++;
+            }
+            ids[at] = id;
+            frequencies[at] = frequency;
+            lengths[at] = length;
+            maxFrequency = Math.max(maxFrequency, frequency);
+        }
+
+        // Whether no note is left
+        synchronized boolean remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+                System.arraycopy(frequencies, at + 1, frequencies, at, size - at - 1);
+                System.arraycopy(lengths, at + 1, lengths, at, size - at - 1);
+                size--;
+            }
+            return size == 0;
+        }
+
+        // Copies the arrays, the query walks them without holding up writers
+        synchronized Cursor cursor(long count, double averageLength) {
+            // A note added since count was taken must not turn the idf negative, scores have to add up
+            double idf = Math.log(1 + (Math.max(count, size) - size + 0.5) / (size + 0.5));
+            return new Cursor(Arrays.copyOf(ids, size), Arrays.copyOf(frequencies, size),
+                    Arrays.copyOf(lengths, size), idf, averageLength, maxFrequency);
+        }
+    }
+
+    // Position of a query in the notes of one of its words
+    private static class Cursor {
+        final int[] ids;
+        final int[] frequencies;
+        final int[] lengths;
+        final double idf;
+        final double averageLength;
+        // Highest score the word can add to a note: its most frequent occurrence in the shortest possible note
+        final double maxScore;
+        int position;
+
+        Cursor(int[] ids, int[] frequencies, int[] lengths, double idf, double averageLength, int maxFrequency) {
+            this.ids = ids;
+            this.frequencies = frequencies;
+            this.lengths = lengths;
+            this.idf = idf;
+            this.averageLength = averageLength;
+            this.maxScore = idf * maxFrequency * (K1 + 1) / (maxFrequency + K1 * (1 - B));
+        }
+
+        boolean done() {
+            return position == ids.length;
+        }
+
+        int id() {
+            return ids[position];
+        }
+
+        double score() {
+            double tf = frequencies[position];
+            double norm = K1 * (1 - B + B * lengths[position] / averageLength);
+            return idf * tf * (K1 + 1) / (tf + norm);
+        }
+
+        // Moves to the first note at or after id, true when it is that note
+        boolean advanceTo(int id) {
+            if (done() || ids[position] >= id) {
+                return !done() && ids[position] == id;
+            }
+            int at = Arrays.binarySearch(ids, position, ids.length, id);
+            position = at >= 0 ? at : -at - 1;
+            return at >= 0;
+        }
+    }
+
+    public static class Hit {
+        final int id;
+        final double score;
+
+        Hit(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        public int id() { return id; }
+
+        public double score() { return score; }
+    }
+
+    public static class Result {
+        final List<Hit> hits;
+        final long total;
+
+        Result(List<Hit> hits, long total) {
+            this.hits = hits;
+            this.total = total;
+        }
+
+        public List<Hit> hits() { return hits; }
+
+        // Number of notes matching any word of the query
+        public long total() { return total; }
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        store.stream(null, null, note -> put(note.getId(), note.getTitle(), note.getContent()));
+    }
+
+    void onNoteEvent(@Observes(during = TransactionPhase.AFTER_SUCCESS) NoteEvent event) {
+        Note note = event.getNote();
+        if (event.getType() == NoteEvent.Type.DELETED) {
+            remove(note.getId());
+        } else {
+            put(note.getId(), note.getTitle(), note.getContent());
+        }
+    }
+
+    // Best matches first, ties by id; offset and size select the page
+    public Result search(String query, long offset, int size) {
+        Set<String> queryWords = new LinkedHashSet<>(words(query));
+        if (queryWords.isEmpty()) {
+            throw new IllegalArgumentException("Query must contain at least one word");
+        }
+        if (offset < 0 || size < 1) {
+            throw new IllegalArgumentException("Page and size must be greater than 0");
+        }
+        if (offset + size > maxWindow) {
+            throw new IllegalArgumentException("Search results are limited to the first " + maxWindow + ", refine the query");
+        }
+
+        long count = documents.size();
+        if (count == 0) {
+            return new Result(List.of(), 0);
+        }
+        double averageLength = Math.max(1, (double) totalLength.get() / count);
+
+        List<Cursor> cursors = new ArrayList<>(queryWords.size());
+        for (String word : queryWords) {
+            Postings holders = postings.get(word);
+            if (holders == null) continue;
+
+            Cursor cursor = holders.cursor(count, averageLength);
+            if (!cursor.done()) {
+                cursors.add(cursor);
+            }
+        }
+        if (cursors.isEmpty()) {
+            return new Result(List.of(), 0);
+        }
+
+        // Lowest scores first; upTo[i] is the most the words up to i can add to a note together
+        cursors.sort(Comparator.comparingDouble(cursor -> cursor.maxScore));
+        double[] upTo = new double[cursors.size()];
+        double sum = 0;
+        for (int i = 0; i < cursors.size(); i++) {
+            sum += cursors.get(i).maxScore;
+            upTo[i] = sum;
+        }
+
+        // Worst of the kept hits on top. Notes come in id order, so a later one with the same score ranks below
+        Comparator<Hit> ranking = Comparator.comparingDouble((Hit hit) -> hit.score).reversed()
+                .thenComparingInt(hit -> hit.id);
+        PriorityQueue<Hit> best = new PriorityQueue<>(ranking.reversed());
+        int window = (int) offset + size;
+        double threshold = -1; // score a note has to beat once the heap is full
+        // Words before this one cannot bring in a note on their own, they are only looked up
+        int essential = 0;
+
+        while (true) {
+            int id = Integer.MAX_VALUE;
+            boolean found = false;
+            for (int i = essential; i < cursors.size(); i++) {
+                Cursor cursor = cursors.get(i);
+                if (!cursor.done() && cursor.id() <= id) {
+                    id = cursor.id();
+                    found = true;
+                }
+            }
+            if (!found) break;
+
+            double score = 0;
+            for (int i = essential; i < cursors.size(); i++) {
+                Cursor cursor = cursors.get(i);
+                if (!cursor.done() && cursor.id() == id) {
+                    score += cursor.score();
+                    cursor.position++;
+                }
+            }
+            for (int i = essential - 1; i >= 0; i--) {
+                if (score + upTo[i] <= threshold) break;
+                Cursor cursor = cursors.get(i);
+                if (cursor.advanceTo(id)) {
+                    score += cursor.score();
+                }
+            }
+
+            if (best.size() < window) {
+                best.add(new Hit(id, score));
+            } else if (score > threshold) {
+                best.poll();
+                best.add(new Hit(id, score));
+            } else {
+                continue;
+            }
+            if (best.size() == window) {
+                threshold = best.peek().score;
+                while (essential < cursors.size() && upTo[essential] <= threshold) {
+                    essential++;
+                }
+            }
+        }
+
+        List<Hit> ranked = new ArrayList<>(best);
+        ranked.sort(ranking);
+        List<Hit> page = offset < ranked.size() ? ranked.subList((int) offset, ranked.size()) : Collections.emptyList();
+        return new Result(new ArrayList<>(page), matching(cursors));
+    }
+
+    // Notes holding any of the words, counted by merging their id arrays
+    private static long matching(List<Cursor> cursors) {
+        if (cursors.size() == 1) {
+            return cursors.get(0).ids.length;
+        }
+        int[] positions = new int[cursors.size()];
+        long matching = 0;
+        while (true) {
+            int id = Integer.MAX_VALUE;
+            boolean found = false;
+            for (int i = 0; i < cursors.size(); i++) {
+                int[] ids = cursors.get(i).ids;
+                if (positions[i] < ids.length && ids[positions[i]] <= id) {
+                    id = ids[positions[i]];
+                    found = true;
+                }
+            }
+            if (!found) return matching;
+
+            matching++;
+            for (int i = 0; i < cursors.size(); i++) {
+                int[] ids = cursors.get(i).ids;
+                if (positions[i] < ids.length && ids[positions[i]] == id) {
+                    positions[i]++;
+                }
+            }
+        }
+    }
+
+    void put(int id, String title, String content) {
+        Map<String, Integer> words = new HashMap<>();
+        for (String word : words(title)) words.merge(word, TITLE_WEIGHT, Integer::sum);
+        for (String word : words(content)) words.merge(word, 1, Integer::sum);
+        int length = words.values().stream().mapToInt(Integer::intValue).sum();
+
+        // compute keeps concurrent changes of the same note from interleaving
+        documents.compute(id, (key, previous) -> {
+            if (previous != null) {
+                unindex(id, previous);
+            }
+            for (Map.Entry<String, Integer> word : words.entrySet()) {
+                postings.compute(word.getKey(), (w, holders) -> {
+                    Postings updated = holders != null ? holders : new Postings();
+                    updated.put(id, word.getValue(), length);
+                    return updated;
+                });
+            }
+            totalLength.addAndGet(length);
+            return new Document(words, length);
+        });
+    }
+
+    void remove(int id) {
+        documents.computeIfPresent(id, (key, previous) -> {
+            unindex(id, previous);
+            return null;
+        });
+    }
+
+    private void unindex(int id, Document document) {
+        for (String word : document.words.keySet()) {
+            postings.computeIfPresent(word, (w, holders) -> holders.remove(id) ? null : holders);
+        }
+        totalLength.addAndGet(-document.length);
+    }
+
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) return words;
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start <= MAX_WORD_LENGTH) {
+                    words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
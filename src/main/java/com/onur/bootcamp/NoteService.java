@@ -2,102 +2,263 @@ package com.onur.bootcamp;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.TypedQuery;
 import jakarta.transaction.Transactional;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import io.micrometer.core.instrument.Tags;
 
 @ApplicationScoped
 public class NoteService {
     @Inject
-    EntityManager em;
+    NoteStore store;
+
+    @Inject
+    TitleTrigramIndex titleIndex;
+
+    @Inject
+    NoteSearchIndex searchIndex;
+
+    @Inject
+    NoteCache noteCache;
+
+    @Inject
+    LatestNoteTracker latestNote;
+
+    @Inject
+    NoteCounts noteCounts;
+
+    @Inject
+    NoteRevision noteRevision;
+
+    @Inject
+    Event<NoteEvent> noteEvents;
+
+    @Inject
+    Validator validator;
+
+    @Inject
+    NoteMetrics metrics;
+
+    // Reads served from memory skip admission, only the ones that reach the store go through it
+    @Inject
+    AdmissionController admission;
 
     public List<Note> getAllNotes() {
         return getAllNotes(1, 10, "urgency,desc", null, null);
     }
 
     public List<Note> getAllNotes(int page, int size, String sort, Urgency urgency, String title) {
-        String[] sortParts = sort.split(",");
-        String sortField = sortParts[0];
-        String sortOrder = (sortParts.length > 1) ? sortParts[1].toUpperCase() : "DESC";
+        return getAllNotes(page, size, sort, urgency, title, null);
+    }
 
-        String jpql = "SELECT n FROM Note n WHERE 1=1";
+    // When a cursor is given the page number is ignored and the page starts right after the cursor
+    @AdmissionControlled(AdmissionControlled.Kind.READ)
+    public List<Note> getAllNotes(int page, int size, String sort, Urgency urgency, String title, NoteCursor after) {
+        return list("list", page, size, sort, urgency, title, after, (noteSort, titleFilter, titleIds) -> store.list(
+                noteSort, urgency, titleFilter, titleIds, after, (page - 1) * size, size));
+    }
 
-        if (title != null && !title.isBlank()) {
-            jpql += " AND LOWER(n.title) like :title";
-        }
+    // Like getAllNotes, but only the requested fields, the JPA store reads just those columns
+    @AdmissionControlled(AdmissionControlled.Kind.READ)
+    public List<NoteView> getNoteViews(int page, int size, String sort, Urgency urgency, String title, NoteCursor after,
+                                       NoteFields fields) {
+        return list("list-fields", page, size, sort, urgency, title, after, (noteSort, titleFilter, titleIds) -> store.listViews(
+                fields, noteSort, urgency, titleFilter, titleIds, after, (page - 1) * size, size));
+    }
 
-        if (urgency != null) {
-            jpql += " AND n.urgency = :urgency";
-        }
+    // A store list call, with a blank title filter already dropped
+    private interface ListQuery<T> {
+        List<T> run(NoteSort sort, String title, Set<Integer> titleIds);
+    }
 
-        if (!sortField.matches("id|title|urgency|content")) sortField = "urgency";
-        if (!sortOrder.matches("ASC|DESC")) sortOrder = "DESC";
+    private <T> List<T> list(String name, int page, int size, String sort, Urgency urgency, String title, NoteCursor after,
+                             ListQuery<T> query) {
+        NoteSort noteSort = NoteSort.parse(sort);
 
-        String orderBy;
-        if ("title".equals(sortField) || "content".equals(sortField)) {
-            orderBy = " ORDER BY LOWER(n." + sortField + ") " + sortOrder;
-        } else {
-            orderBy = " ORDER BY n." + sortField + " " + sortOrder;
+        if (after != null && !after.matches(noteSort)) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort");
+        }
+        // The same for every store, Hibernate used to reject these itself
+        if ((after == null && page < 1) || size < 0) {
+            throw new IllegalArgumentException("Page must be greater than 0 and size must not be negative");
         }
 
-        TypedQuery<Note> query = em.createQuery(jpql + orderBy, Note.class);;
+        boolean hasTitle = title != null && !title.isBlank();
+        Set<Integer> titleIds = hasTitle ? titleIndex.idsWithTitleContaining(title) : null;
+        String titleLookup = !hasTitle ? "none" : titleIds == null ? "scan" : titleIds.isEmpty() ? "empty" : "index";
+        Tags tags = NoteMetrics.filterTags(urgency, hasTitle, titleLookup).and(NoteMetrics.sortTags(noteSort, after != null));
 
-        if(title != null && !title.isBlank()) {
-            query.setParameter("title", "%" + title.toLowerCase() + "%");
+        if (titleIds != null && titleIds.isEmpty()) {
+            metrics.recordRows(name, tags, 0);
+            return new ArrayList<>();
         }
 
-        if (urgency != null) {
-            query.setParameter("urgency", urgency);
-        }
+        List<T> rows = metrics.timeQuery(name, tags, () -> query.run(noteSort, hasTitle ? title : null, titleIds));
+        metrics.recordRows(name, tags, rows.size());
+        return rows;
+    }
 
-        return query
-                .setFirstResult((page - 1) * size)
-                .setMaxResults(size)
-                .getResultList();
+    // Hands every matching note to the consumer in id order, the store streams them without loading all at once
+    public void streamNotes(Urgency urgency, String title, Consumer<Note> consumer) {
+        boolean hasTitle = title != null && !title.isBlank();
+        Tags tags = NoteMetrics.filterTags(urgency, hasTitle, hasTitle ? "scan" : "none");
+        int[] rows = {0};
+        // Includes the time spent writing each row to the client
+        metrics.timeQuery("export", tags, () -> store.stream(urgency, hasTitle ? title : null, note -> {
+            rows[0]++;
+            consumer.accept(note);
+        }));
+        metrics.recordRows("export", tags, rows[0]);
     }
 
+    // Served from NoteCache, the returned note is shared and must not be modified
     public Note getNoteById(int id) {
-        return em.find(Note.class, id);
+        // Only cache misses reach the database and the timer, hits show up in the cache metrics
+        return noteCache.get(id, key -> admission.supply(AdmissionControlled.Kind.READ,
+                () -> metrics.timeQuery("find", Tags.empty(), () -> store.find(key))));
+    }
+
+    /*
+     * Ranked by NoteSearchIndex, the notes of the page come from NoteCache. A note deleted between
+     * ranking and loading is left out, that page comes back one short.
+     */
+    public NoteSearchHit.Page search(String query, int page, int size) {
+        NoteSearchIndex.Result result = metrics.timeQuery("search", Tags.empty(),
+                () -> searchIndex.search(query, (page - 1L) * size, size));
+        metrics.recordRows("search", Tags.empty(), result.hits().size());
+
+        List<NoteSearchHit> hits = new ArrayList<>(result.hits().size());
+        for (NoteSearchIndex.Hit hit : result.hits()) {
+            Note note = getNoteById(hit.id());
+            if (note != null) {
+                hits.add(new NoteSearchHit(hit.score(), note));
+            }
+        }
+        return new NoteSearchHit.Page(hits, result.total());
+    }
+
+    public NoteCacheStats getCacheStats() {
+        return noteCache.stats();
+    }
+
+    // Served from NoteCounts, no query
+    public NoteStats getStats() {
+        return noteCounts.stats();
+    }
+
+    /*
+     * Number of notes a list with these filters pages through. Exact from the counters without a title filter,
+     * from the trigram index when it answers and no urgency narrows the ids further, otherwise a COUNT cached
+     * by NoteCounts.
+     */
+    public long countNotes(Urgency urgency, String title) {
+        if (title == null || title.isBlank()) {
+            return urgency == null ? noteCounts.total() : noteCounts.count(urgency);
+        }
+
+        Set<Integer> titleIds = titleIndex.idsWithTitleContaining(title);
+        if (titleIds != null && (titleIds.isEmpty() || urgency == null)) {
+            return titleIds.size();
+        }
+
+        return noteCounts.filtered(urgency, title, () -> admission.supply(AdmissionControlled.Kind.READ,
+                () -> metrics.timeQuery("count", NoteMetrics.filterTags(urgency, true, titleIds == null ? "scan" : "index"),
+                        () -> store.count(urgency, title, titleIds))));
     }
 
     @Transactional
+    @AdmissionControlled(AdmissionControlled.Kind.WRITE)
     public void createNote(Note note) {
         if (note.getUrgency() == null) {
             note.setUrgency(Urgency.LOW);
         }
 
-        em.persist(note);
+        metrics.timeQuery("create", Tags.empty(), () -> store.create(note));
+        noteEvents.fire(NoteEvent.created(note));
+    }
+
+    // Stores all notes at once: in one transaction with the JPA store, as one group written at commit with the log store
+    @Transactional
+    @AdmissionControlled(AdmissionControlled.Kind.BULK)
+    public void createNotes(List<Note> notes) {
+        for (Note note : notes) {
+            if (note.getUrgency() == null) {
+                note.setUrgency(Urgency.LOW);
+            }
+        }
+
+        metrics.timeQuery("create-batch", Tags.empty(), () -> store.createAll(notes));
+        metrics.recordRows("create-batch", Tags.empty(), notes.size());
+        for (Note note : notes) {
+            noteEvents.fire(NoteEvent.created(note));
+        }
+    }
+
+    // Checks the Note constraints the way @Valid does, returns null for a valid note
+    public String validationError(Note note) {
+        if (note == null) {
+            return "Note must not be null";
+        }
 
+        Set<ConstraintViolation<Note>> violations = validator.validate(note);
+        if (violations.isEmpty()) {
+            return null;
+        }
+
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
     }
 
     @Transactional
     public Note updateNote(int id, NoteUpdateRequest incoming) {
-        Note n = em.find(Note.class, id); // n is now a managed entity
-        if (n == null) return null;
-        if (incoming.getContent() != null) n.setContent(incoming.getContent());
-        if (incoming.getTitle() != null) n.setTitle(incoming.getTitle());
-        if (incoming.getUrgency() != null) n.setUrgency(incoming.getUrgency());
+        return updateNote(id, incoming, null);
+    }
 
-        return n;
+    // expectedVersion null updates whatever is stored, otherwise only that version of the note
+    @Transactional
+    @AdmissionControlled(AdmissionControlled.Kind.WRITE)
+    public Note updateNote(int id, NoteUpdateRequest incoming, Integer expectedVersion) {
+        NoteEvent updated = metrics.timeQuery("update", Tags.empty(), () -> store.update(id, incoming, expectedVersion));
+        if (updated == null) return null;
+        noteEvents.fire(updated);
+        return updated.getNote();
     }
 
     @Transactional
     public boolean deleteNoteById(int id) {
-        Note n = em.find(Note.class, id);
-        if (n != null) {
-            em.remove(n);
-            return true;
-        }
-        return false;
+        return deleteNoteById(id, null);
+    }
+
+    @Transactional
+    @AdmissionControlled(AdmissionControlled.Kind.WRITE)
+    public boolean deleteNoteById(int id, Integer expectedVersion) {
+        NoteEvent deleted = metrics.timeQuery("delete", Tags.empty(), () -> store.delete(id, expectedVersion));
+        if (deleted == null) return false;
+        noteEvents.fire(deleted);
+        return true;
     }
 
+    public String getRevision() {
+        return noteRevision.current();
+    }
+
+    // Served from LatestNoteTracker, the returned note is shared and must not be modified
     public Note getLatestNote() {
-        List<Note> notes = em.createQuery("SELECT n FROM Note n ORDER BY n.id DESC", Note.class)
-                .setMaxResults(1)
-                .getResultList();
-        return notes.isEmpty() ? null : notes.get(0);
+        return latestNote.get(() -> admission.supply(AdmissionControlled.Kind.READ,
+                () -> metrics.timeQuery("latest", Tags.empty(), store::latest)));
+    }
+
+    // Cheapest possible round trip, used by the readiness check
+    public void ping() {
+        metrics.timeQuery("ping", Tags.empty(), store::ping);
     }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.onur.bootcamp;
+
+// Parsed form of the "field,order" sort parameter, unknown values fall back to urgency,DESC
+public class NoteSort {
+    private static final String[] FIELDS = {"urgency", "title", "content", "id"};
+
+    // Every combination exists once, index = field * 2 + (descending ? 1 : 0)
+    private static final NoteSort[] ALL = new NoteSort[FIELDS.length * 2];
+
+    static {
+        for (int field = 0; field < FIELDS.length; field++) {
+            ALL[field * 2] = new NoteSort(FIELDS[field], "ASC", field * 2);
+            ALL[field * 2 + 1] = new NoteSort(FIELDS[field], "DESC", field * 2 + 1);
+        }
+    }
+
+    static final int COUNT = ALL.length;
+
+    private final String field;
+    private final String order;
+    private final int index;
+
+    private NoteSort(String field, String order, int index) {
+        this.field = field;
+        this.order = order;
+        this.index = index;
+    }
+
+    // Compares in place instead of splitting, parsing runs on every list request
+    public static NoteSort parse(String sort) {
+        int comma = sort.indexOf(',');
+        int fieldEnd = comma < 0 ? sort.length() : comma;
+
+        int field = 0;
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (fieldEnd == FIELDS[i].length() && sort.startsWith(FIELDS[i])) {
+                field = i;
+                break;
+            }
+        }
+
+        // Like split(","), anything after a second comma is ignored
+        boolean ascending = false;
+        if (comma >= 0) {
+            int orderEnd = sort.indexOf(',', comma + 1);
+            if (orderEnd < 0) orderEnd = sort.length();
+            ascending = orderEnd - comma - 1 == 3 && sort.regionMatches(true, comma + 1, "ASC", 0, 3);
+        }
+
+        return ALL[field * 2 + (ascending ? 0 : 1)];
+    }
+
+    static NoteSort of(int index) {
+        return ALL[index];
+    }
+
+    public String getField() { return field; }
+
+    public String getOrder() { return order; }
+
+    public boolean isAscending() { return "ASC".equals(order); }
+
+    // Position among all field and order combinations, used to look up precompiled queries
+    int index() { return index; }
+
+    // JPQL expression the rows are ordered by, text fields through their indexed lowercase copies
+    public String sortExpression() {
+        if ("title".equals(field) || "content".equals(field)) {
+            return "n." + field + "Lower";
+        }
+        return "n." + field;
+    }
+}
@@ -0,0 +1,18 @@
+package com.onur.bootcamp;
+
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.util.Map;
+
+@Schema(description = "Number of notes in total and per urgency")
+public class NoteStats {
+    @Schema(description = "Number of notes", example = "42")
+    public long total;
+    @Schema(description = "Number of notes per urgency", example = "{\"LOW\": 20, \"MEDIUM\": 12, \"HIGH\": 10}")
+    public Map<Urgency, Long> byUrgency;
+
+    public NoteStats(long total, Map<Urgency, Long> byUrgency) {
+        this.total = total;
+        this.byUrgency = byUrgency;
+    }
+}
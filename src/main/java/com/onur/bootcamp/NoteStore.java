@@ -0,0 +1,60 @@
+package com.onur.bootcamp;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Where notes are kept, everything NoteService and the startup indexes read and write goes through here.
+ * JpaNoteStore (H2 through Hibernate) is the default, app.store=log selects LogNoteStore.
+ *
+ * Lists take the title filter twice: title is the fragment as the client sent it, titleIds the ids
+ * TitleTrigramIndex found for it or null when it declined. A store may narrow by the ids but must still
+ * check the fragment, a note renamed since the index lookup has to drop out.
+ */
+public interface NoteStore {
+    // A detached copy, null when there is no such note
+    Note find(int id);
+
+    // The note with the highest id, null when there are none
+    Note latest();
+
+    // One page in the given order, starting right after the cursor when one is given, otherwise at offset
+    List<Note> list(NoteSort sort, Urgency urgency, String title, Set<Integer> titleIds, NoteCursor after,
+                    int offset, int size);
+
+    // Like list, but only the requested fields of each note are filled in
+    List<NoteView> listViews(NoteFields fields, NoteSort sort, Urgency urgency, String title, Set<Integer> titleIds,
+                             NoteCursor after, int offset, int size);
+
+    long count(Urgency urgency, String title, Set<Integer> titleIds);
+
+    // Number of notes per urgency, notes without one under a null key
+    Map<Urgency, Long> countByUrgency();
+
+    // Every matching note in id order, without holding all of them in memory
+    void stream(Urgency urgency, String title, Consumer<Note> consumer);
+
+    // Assigns id and version to the note
+    void create(Note note);
+
+    // Assigns ids and versions, all notes are stored or none
+    void createAll(List<Note> notes);
+
+    // The change to publish, null when there is no such note. Throws StaleNoteException when expectedVersion
+    // is given and differs from the stored one.
+    NoteEvent update(int id, NoteUpdateRequest incoming, Integer expectedVersion);
+
+    // Same contract as update
+    NoteEvent delete(int id, Integer expectedVersion);
+
+    // Cheapest possible round trip, used by the readiness check
+    void ping();
+
+    static void checkVersion(Note note, Integer expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(note.getVersion())) {
+            throw new StaleNoteException("Note has been modified");
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.onur.bootcamp;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+// Picks the NoteStore named by app.store, the other engine is never created
+@ApplicationScoped
+public class NoteStores {
+    @Inject
+    @ConfigProperty(name = "app.store", defaultValue = "jpa")
+    String store;
+
+    @Produces
+    @ApplicationScoped
+    NoteStore noteStore(Instance<JpaNoteStore> jpa, Instance<LogNoteStore> log) {
+        return switch (store) {
+            case "jpa" -> jpa.get();
+            case "log" -> log.get();
+            default -> throw new IllegalArgumentException("Unknown app.store " + store + ", expected jpa or log");
+        };
+    }
+}
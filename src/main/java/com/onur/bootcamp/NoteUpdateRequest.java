@@ -38,6 +38,13 @@ public class NoteUpdateRequest {
         this.title = title;
     }
 
+    // Copies the provided fields onto the note, the others keep their value
+    public void applyTo(Note note) {
+        if (content != null) note.setContent(content);
+        if (title != null) note.setTitle(title);
+        if (urgency != null) note.setUrgency(urgency);
+    }
+
     public void validate() {
         if ((content != null && content.trim().isEmpty()) ||
                 (title != null && title.trim().isEmpty())) {
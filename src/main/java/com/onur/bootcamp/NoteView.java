@@ -0,0 +1,28 @@
+package com.onur.bootcamp;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+// A note reduced to the fields a list request asked for, the others are left out of the JSON
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Note with only the requested fields")
+public class NoteView {
+    public Integer id;
+    public String title;
+    public String content;
+    public Urgency urgency;
+    public Integer version;
+
+    // Holds the id and sort key even when they were not requested, not serialized
+    final Note note;
+
+    // Bits in the order of NoteFields: id, title, content, urgency, version
+    NoteView(Note note, int requested) {
+        this.note = note;
+        if ((requested & 1) != 0) id = note.getId();
+        if ((requested & 1 << 1) != 0) title = note.getTitle();
+        if ((requested & 1 << 2) != 0) content = note.getContent();
+        if ((requested & 1 << 3) != 0) urgency = note.getUrgency();
+        if ((requested & 1 << 4) != 0) version = note.getVersion();
+    }
+}
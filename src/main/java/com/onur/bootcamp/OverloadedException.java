@@ -0,0 +1,17 @@
+package com.onur.bootcamp;
+
+import java.util.concurrent.RejectedExecutionException;
+
+// Thrown when AdmissionController sheds a call, NoteResource answers it with 503 and Retry-After
+public class OverloadedException extends RejectedExecutionException {
+    private final long retryAfterSeconds;
+
+    public OverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
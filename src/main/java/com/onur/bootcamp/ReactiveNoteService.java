@@ -0,0 +1,154 @@
+package com.onur.bootcamp;
+
+import io.quarkus.virtual.threads.VirtualThreads;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * NoteService with Uni results, so NoteResource can return without holding a thread while the database works.
+ *
+ * H2 has no non-blocking driver, so JDBC calls still block, but only on a dedicated executor with one thread
+ * per pooled connection. Requests waiting for a connection sit in its queue instead of each parking an HTTP
+ * worker thread, and cache hits are answered on the I/O thread without any hand-off.
+ * With app.reactive.enabled=false every call runs where a blocking endpoint would: on a virtual thread when
+ * quarkus.virtual-threads.enabled is set on Java 21+, on the regular worker pool otherwise.
+ */
+@ApplicationScoped
+public class ReactiveNoteService {
+    // Stands for "not tracked yet", a null latest note means the table is empty
+    private static final Note NOT_TRACKED = new Note();
+
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    NoteCache noteCache;
+
+    @Inject
+    LatestNoteTracker latestNote;
+
+    @Inject
+    NoteGroupCommitter groupCommitter;
+
+    // Quarkus falls back to its worker pool when virtual threads are disabled or not supported by the JVM
+    @Inject
+    @VirtualThreads
+    ExecutorService blockingExecutor;
+
+    @Inject
+    @ConfigProperty(name = "app.reactive.enabled", defaultValue = "false")
+    boolean enabled;
+
+    // More threads than connections would only block on the connection pool
+    @Inject
+    @ConfigProperty(name = "quarkus.datasource.jdbc.max-size", defaultValue = "20")
+    int databaseThreads;
+
+    // Calls beyond this many waiting ones fail with a RejectedExecutionException
+    @Inject
+    @ConfigProperty(name = "app.reactive.max-queued", defaultValue = "10000")
+    int maxQueued;
+
+    private ManagedExecutor databaseExecutor;
+
+    @PostConstruct
+    void init() {
+        if (enabled) {
+            databaseExecutor = ManagedExecutor.builder()
+                    .maxAsync(databaseThreads)
+                    .maxQueued(maxQueued)
+                    .build();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (databaseExecutor != null) {
+            databaseExecutor.shutdown();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Uni<List<Note>> getAllNotes(int page, int size, String sort, Urgency urgency, String title, NoteCursor after) {
+        return offload(() -> noteService.getAllNotes(page, size, sort, urgency, title, after));
+    }
+
+    // Without a title filter the count comes from in-memory counters, no reason to hand it off
+    public Uni<Long> countNotes(Urgency urgency, String title) {
+        if (title == null || title.isBlank()) {
+            return Uni.createFrom().item(noteService.countNotes(urgency, null));
+        }
+        return offload(() -> noteService.countNotes(urgency, title));
+    }
+
+    public Uni<List<NoteView>> getNoteViews(int page, int size, String sort, Urgency urgency, String title, NoteCursor after,
+                                            NoteFields fields) {
+        return offload(() -> noteService.getNoteViews(page, size, sort, urgency, title, after, fields));
+    }
+
+    // Ranking runs in memory, but notes missing from the cache are loaded from the database
+    public Uni<NoteSearchHit.Page> search(String query, int page, int size) {
+        return offload(() -> noteService.search(query, page, size));
+    }
+
+    // The returned note is shared and must not be modified
+    public Uni<Note> getNoteById(int id) {
+        if (enabled) {
+            Note cached = noteCache.getIfPresent(id);
+            if (cached != null) return Uni.createFrom().item(cached);
+        }
+        return offload(() -> noteService.getNoteById(id));
+    }
+
+    // The returned note is shared and must not be modified
+    public Uni<Note> getLatestNote() {
+        if (enabled) {
+            Note tracked = latestNote.getOrElse(NOT_TRACKED);
+            if (tracked != NOT_TRACKED) return Uni.createFrom().item(tracked);
+        }
+        return offload(noteService::getLatestNote);
+    }
+
+    public Uni<Note> createNote(Note note) {
+        // Waits for the group commit without holding any thread
+        if (groupCommitter.isEnabled()) {
+            return Uni.createFrom().completionStage(() -> groupCommitter.submit(note));
+        }
+        return offload(() -> {
+            noteService.createNote(note);
+            return note;
+        });
+    }
+
+    public Uni<List<Note>> createNotes(List<Note> notes) {
+        return offload(() -> {
+            noteService.createNotes(notes);
+            return notes;
+        });
+    }
+
+    public Uni<Note> updateNote(int id, NoteUpdateRequest incoming, Integer expectedVersion) {
+        return offload(() -> noteService.updateNote(id, incoming, expectedVersion));
+    }
+
+    public Uni<Boolean> deleteNoteById(int id, Integer expectedVersion) {
+        return offload(() -> noteService.deleteNoteById(id, expectedVersion));
+    }
+
+    // Both executors carry the request context over, the EntityManager needs it outside transactions
+    private <T> Uni<T> offload(Supplier<T> call) {
+        return Uni.createFrom().item(call).runSubscriptionOn(enabled ? databaseExecutor : blockingExecutor);
+    }
+}
@@ -0,0 +1,56 @@
+package com.onur.bootcamp;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.quarkus.runtime.configuration.MemorySize;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Request body limit per route. quarkus.http.limits.max-body-size is one limit for every route, it has to be
+ * as large as the biggest import, and would let every JSON endpoint buffer that much. It stays the upper
+ * bound, this handler runs right after Quarkus' own check and holds every route but the import to
+ * app.http.max-body-size. Like Quarkus, it rejects a too large Content-Length before reading the body and
+ * bounds a chunked body while the endpoint reads it.
+ */
+@ApplicationScoped
+public class RequestBodyLimit {
+    // Routing context key the request InputStream takes its limit from
+    private static final String MAX_REQUEST_SIZE_KEY = "io.quarkus.max-request-size";
+
+    private static final String IMPORT_PATH = "/notes/import";
+
+    @Inject
+    @ConfigProperty(name = "app.http.max-body-size", defaultValue = "10240K")
+    MemorySize maxBodySize;
+
+    void register(@Observes Router router) {
+        long limit = maxBodySize.asLongValue();
+        // Quarkus' check is at order -2
+        router.route().order(-1).handler(ctx -> {
+            if (ctx.request().method() == HttpMethod.POST && IMPORT_PATH.equals(ctx.normalizedPath())) {
+                ctx.next();
+                return;
+            }
+
+            String length = ctx.request().getHeader(HttpHeaders.CONTENT_LENGTH);
+            if (length != null && Long.parseLong(length) > limit) {
+                reject(ctx);
+                return;
+            }
+            ctx.put(MAX_REQUEST_SIZE_KEY, limit);
+            ctx.next();
+        });
+    }
+
+    private static void reject(RoutingContext ctx) {
+        ctx.response().putHeader(HttpHeaders.CONNECTION, "close");
+        ctx.response().setStatusCode(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE.code());
+        ctx.response().end();
+    }
+}
@@ -0,0 +1,49 @@
+package com.onur.bootcamp;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Times writing response entities, tagged by entity type. For streamed exports the
+ * entity writes itself, so its time also covers the database reads behind it.
+ */
+@Provider
+public class SerializationTimer implements WriterInterceptor {
+    @Inject
+    MeterRegistry registry;
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            context.proceed();
+        } finally {
+            sample.stop(Timer.builder("notes.serialization")
+                    .description("Time spent writing response entities")
+                    .tag("type", entityType(context))
+                    .tag("media_type", context.getMediaType() != null ? context.getMediaType().getSubtype() : "none")
+                    .register(registry));
+        }
+    }
+
+    // Streamed bodies are lambdas, their generated class names would make a new series per build
+    private static String entityType(WriterInterceptorContext context) {
+        Object entity = context.getEntity();
+        if (entity instanceof List) {
+            return "List";
+        }
+        if (entity instanceof StreamingOutput) {
+            return "StreamingOutput";
+        }
+        return entity != null ? entity.getClass().getSimpleName() : "none";
+    }
+}
@@ -0,0 +1,8 @@
+package com.onur.bootcamp;
+
+// Thrown when a write expected another version of the note than the stored one
+public class StaleNoteException extends RuntimeException {
+    public StaleNoteException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,116 @@
+package com.onur.bootcamp;
+
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory trigram index over note titles. A LIKE '%x%' filter cannot use a B-tree index,
+ * so the title filter is answered here first and the database only fetches the matching ids.
+ */
+@ApplicationScoped
+public class TitleTrigramIndex {
+    private static final int GRAM = 3;
+
+    private final Map<String, Set<Integer>> postings = new ConcurrentHashMap<>();
+    private final Map<Integer, String> titles = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    @Inject
+    NoteStore store;
+
+    @Inject
+    @ConfigProperty(name = "app.title-index.max-candidates", defaultValue = "100")
+    int maxCandidates;
+
+    void onStart(@Observes StartupEvent event) {
+        store.stream(null, null, note -> put(note.getId(), note.getTitle()));
+        loaded = true;
+    }
+
+    void onNoteEvent(@Observes(during = TransactionPhase.AFTER_SUCCESS) NoteEvent event) {
+        Note note = event.getNote();
+        if (event.getType() == NoteEvent.Type.DELETED) {
+            remove(note.getId());
+        } else {
+            put(note.getId(), note.getTitle());
+        }
+    }
+
+    /**
+     * Returns the ids of all notes whose title contains the fragment, ignoring case.
+     * Returns null when the index can not answer: fragments shorter than a trigram,
+     * or more matches than are worth sending to the database as an id list.
+     */
+    public Set<Integer> idsWithTitleContaining(String fragment) {
+        String needle = fragment.toLowerCase(Locale.ROOT);
+        if (!loaded || needle.length() < GRAM) return null;
+
+        // Every match contains every trigram of the needle, so the rarest one bounds the candidates
+        Set<Integer> rarest = null;
+        for (int i = 0; i + GRAM <= needle.length(); i++) {
+            Set<Integer> ids = postings.get(needle.substring(i, i + GRAM));
+            if (ids == null) return Set.of();
+            if (rarest == null || ids.size() < rarest.size()) rarest = ids;
+        }
+
+        Set<Integer> matches = new HashSet<>();
+        for (Integer id : rarest) {
+            String title = titles.get(id);
+            if (title != null && title.contains(needle)) {
+                matches.add(id);
+                if (matches.size() > maxCandidates) return null;
+            }
+        }
+        return matches;
+    }
+
+    void put(int id, String title) {
+        String lowered = title.toLowerCase(Locale.ROOT);
+        // compute keeps concurrent changes of the same note from interleaving
+        titles.compute(id, (key, previous) -> {
+            if (previous != null) {
+                for (String gram : trigrams(previous)) removePosting(gram, id);
+            }
+            for (String gram : trigrams(lowered)) {
+                postings.compute(gram, (g, ids) -> {
+                    Set<Integer> updated = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                    updated.add(id);
+                    return updated;
+                });
+            }
+            return lowered;
+        });
+    }
+
+    void remove(int id) {
+        titles.computeIfPresent(id, (key, previous) -> {
+            for (String gram : trigrams(previous)) removePosting(gram, id);
+            return null;
+        });
+    }
+
+    private void removePosting(String gram, int id) {
+        postings.computeIfPresent(gram, (g, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
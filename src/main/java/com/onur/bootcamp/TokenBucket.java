@@ -0,0 +1,38 @@
+package com.onur.bootcamp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, kept as the time at which the bucket will be full again (the "generic cell rate"
+ * form). Taking a token moves that time one interval further, a request is allowed while the time lies at
+ * most burst intervals ahead of now. One long and a compare-and-set per request, no refill thread.
+ */
+public class TokenBucket {
+    private final long interval; // nanos per token
+    private final long tolerance; // how far ahead of now the full time may be
+
+    private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+    public TokenBucket(double perSecond, int burst) {
+        if (perSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.interval = Math.max(1, (long) (1_000_000_000L / perSecond));
+        this.tolerance = interval * (burst - 1);
+    }
+
+    // Takes a token and returns 0, or leaves the bucket alone and returns the nanos until a token is available
+    public long tryAcquire(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long start = Math.max(current, now);
+            long wait = start - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, start + interval)) {
+                return 0;
+            }
+        }
+    }
+}
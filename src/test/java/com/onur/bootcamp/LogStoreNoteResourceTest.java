@@ -0,0 +1,255 @@
+package com.onur.bootcamp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.enterprise.inject.Typed;
+import jakarta.inject.Inject;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.transaction.UserTransaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs every NoteResourceTest against the memory-mapped log store. Typed keeps this class from also resolving as NoteResourceTest
+@QuarkusTest
+@Typed(LogStoreNoteResourceTest.class)
+@TestProfile(LogStoreNoteResourceTest.LogStore.class)
+public class LogStoreNoteResourceTest extends NoteResourceTest {
+    public static class LogStore implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            // A new log per run, notes of an earlier run must not show up in the counts
+            return Map.of("app.store", "log",
+                    "app.store.log.path", "target/log-store-test/notes-" + System.nanoTime() + ".log");
+        }
+    }
+
+    @Inject
+    NoteStore store;
+
+    @Inject
+    TransactionSynchronizationRegistry transactions;
+
+    @Inject
+    UserTransaction transaction;
+
+    // Replaces the JPA cleanup of the parent class, which would not reach the log. Deletes through the
+    // service, so the counters, indexes and caches that follow note events forget the notes too
+    @Override
+    @BeforeEach
+    public void cleanDb() {
+        List<Integer> ids = new ArrayList<>();
+        store.stream(null, null, note -> ids.add(note.getId()));
+        ids.forEach(noteService::deleteNoteById);
+    }
+
+    @Override
+    @Test
+    @Disabled("No SQL plans with the log store")
+    public void testGetNotes_EveryListShapeUsesAnIndex() {
+    }
+
+    // NoteQueries leaves the table alone with the log store
+    @Override
+    @Test
+    @Disabled("No id sequence with the log store")
+    public void testIdSequenceStartsAboveExistingIds() {
+    }
+
+    @Override
+    @Test
+    @Disabled("No table to backfill with the log store")
+    public void testBackfill_VersionOfOlderRows() {
+    }
+
+    @Override
+    @Test
+    @Disabled("No table to backfill with the log store")
+    public void testBackfill_WidensLowercaseColumns() {
+    }
+
+    @Test
+    public void testLogStoreSelected() {
+        assertTrue(ClientProxy.unwrap(store) instanceof LogNoteStore);
+        // No list queries prepared for a table that is not read
+        assertNull(noteQueries.listQuery(NoteSort.parse("id,asc"), NoteQueries.TITLE_NONE, false, false));
+    }
+
+    @Test
+    public void testLogStore_WritesWaitForTheCommit() throws Exception {
+        Note kept = new Note(null, "kept", "kept", Urgency.LOW);
+        noteService.createNote(kept);
+        long total = noteService.countNotes(null, null);
+
+        // A rolled back batch leaves nothing behind
+        List<Note> batch = List.of(new Note(null, "rolled back", "rolled back", Urgency.LOW),
+                new Note(null, "rolled back", "rolled back", Urgency.HIGH));
+        transaction.begin();
+        noteService.createNotes(batch);
+        assertNull(store.find(batch.get(0).getId()));
+        transaction.rollback();
+        assertNull(store.find(batch.get(0).getId()));
+        assertNull(store.find(batch.get(1).getId()));
+        assertEquals(total, noteService.countNotes(null, null));
+
+        // Later writes of a transaction build on its earlier ones, other writers have to wait for the commit
+        transaction.begin();
+        noteService.updateNote(kept.getId(), new NoteUpdateRequest(null, "renamed", null), 0);
+        noteService.updateNote(kept.getId(), new NoteUpdateRequest(null, null, Urgency.HIGH), 1);
+        assertEquals("kept", store.find(kept.getId()).getTitle());
+        ExecutionException conflict = assertThrows(ExecutionException.class, () -> CompletableFuture
+                .supplyAsync(() -> noteService.deleteNoteById(kept.getId()))
+                .get(10, TimeUnit.SECONDS));
+        assertTrue(conflict.getCause() instanceof StaleNoteException, conflict.getCause().toString());
+        transaction.commit();
+
+        Note committed = store.find(kept.getId());
+        assertEquals("renamed", committed.getTitle());
+        assertEquals(Urgency.HIGH, committed.getUrgency());
+        assertEquals(2, committed.getVersion());
+        assertTrue(noteService.deleteNoteById(kept.getId()));
+    }
+
+    @Test
+    public void testLogStore_RecoversAfterCrash() throws IOException {
+        Path file = Files.createTempDirectory("note-log").resolve("notes.log");
+        LogNoteStore crashed = openLog(file);
+        Note kept = new Note(null, "kept", "kept", Urgency.HIGH);
+        crashed.create(kept);
+        Note changed = new Note(null, "changed", "changed", Urgency.LOW);
+        crashed.create(changed);
+        crashed.update(changed.getId(), new NoteUpdateRequest(null, "renamed", Urgency.MEDIUM), 0);
+        Note deleted = new Note(null, "deleted", "deleted", Urgency.LOW);
+        crashed.create(deleted);
+        crashed.delete(deleted.getId(), null);
+        assertThrows(StaleNoteException.class, () -> crashed.update(kept.getId(), new NoteUpdateRequest("x", null, null), 7));
+
+        // A batch whose last record was torn by the crash, it has to vanish as a whole
+        crashed.createAll(List.of(new Note(null, "torn a", "torn a", Urgency.LOW), new Note(null, "torn b", "torn b", Urgency.LOW)));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), crashed.size() - 1);
+        }
+
+        LogNoteStore recovered = openLog(file);
+        try {
+            assertEquals("kept", recovered.find(kept.getId()).getTitle());
+            Note renamed = recovered.find(changed.getId());
+            assertEquals("renamed", renamed.getTitle());
+            assertEquals("changed", renamed.getContent());
+            assertEquals(Urgency.MEDIUM, renamed.getUrgency());
+            assertEquals(1, renamed.getVersion());
+            assertNull(recovered.find(deleted.getId()));
+            assertEquals(changed.getId(), recovered.latest().getId());
+            assertEquals(2, recovered.count(null, "e", null));
+
+            // Writes continue where the last complete group ended, without reusing ids
+            Note next = new Note(null, "next", "next", Urgency.LOW);
+            recovered.create(next);
+            assertTrue(next.getId() > deleted.getId());
+            assertEquals("next", recovered.find(next.getId()).getTitle());
+        } finally {
+            crashed.close();
+            recovered.close();
+        }
+    }
+
+    @Test
+    public void testLogStore_CompactionKeepsLiveNotes() throws IOException {
+        Path file = Files.createTempDirectory("note-log").resolve("notes.log");
+        LogNoteStore log = openLog(file);
+        // More than the initial mapping holds, the log has to grow
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            notes.add(new Note(null, "content of note " + i + " ".repeat(100), "note " + i, Urgency.values()[i % 3]));
+        }
+        log.createAll(notes);
+        for (int i = 0; i < 600; i += 2) {
+            log.update(notes.get(i).getId(), new NoteUpdateRequest(null, "even " + i, null), null);
+        }
+        for (int i = 1; i < 600; i += 2) {
+            log.delete(notes.get(i).getId(), null);
+        }
+        int last = notes.get(599).getId();
+
+        int before = log.size();
+        log.compact();
+        assertTrue(log.size() < before / 2, log.size() + " of " + before);
+        assertEquals(300, log.countByUrgency().values().stream().mapToLong(Long::longValue).sum());
+        assertEquals("even 0", log.find(notes.get(0).getId()).getTitle());
+        assertNull(log.find(notes.get(1).getId()));
+        List<Note> byTitle = log.list(NoteSort.parse("title,asc"), Urgency.LOW, null, null, null, 0, 3);
+        assertEquals(List.of("even 0", "even 102", "even 108"), byTitle.stream().map(Note::getTitle).toList());
+        log.close();
+
+        LogNoteStore reopened = openLog(file);
+        try {
+            assertEquals(300, reopened.countByUrgency().values().stream().mapToLong(Long::longValue).sum());
+            assertEquals(1, reopened.find(notes.get(598).getId()).getVersion());
+            // The deleted newest note's id is not handed out again
+            Note next = new Note(null, "after compaction", "after compaction", Urgency.HIGH);
+            reopened.create(next);
+            assertTrue(next.getId() > last);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testLogStore_FailedCompactionIsCounted() throws IOException {
+        Path file = Files.createTempDirectory("note-log").resolve("notes.log");
+        LogNoteStore log = openLog(file);
+        try {
+            Note kept = new Note(null, "kept", "kept", Urgency.LOW);
+            log.create(kept);
+            Note deleted = new Note(null, "deleted", "deleted", Urgency.LOW);
+            log.create(deleted);
+            log.delete(deleted.getId(), null);
+
+            // The copy can not be created where a directory is in the way
+            Files.createDirectory(file.resolveSibling("notes.log.compact"));
+            int before = log.size();
+            log.compactIfWorthIt();
+
+            assertEquals(1.0, log.registry.counter("notes.store.compaction.failures").count());
+            assertEquals(before, log.size());
+            assertEquals("kept", log.find(kept.getId()).getTitle());
+        } finally {
+            log.close();
+        }
+    }
+
+    private LogNoteStore openLog(Path file) {
+        LogNoteStore log = new LogNoteStore();
+        log.transactions = transactions;
+        log.path = file;
+        log.initialSize = 64 * 1024;
+        log.sync = true;
+        log.compactionInterval = Duration.ofHours(1);
+        log.compactionGarbageRatio = 0.5;
+        log.registry = new SimpleMeterRegistry();
+        log.init();
+        return log;
+    }
+}
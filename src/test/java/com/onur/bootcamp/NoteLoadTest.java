@@ -0,0 +1,339 @@
+package com.onur.bootcamp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Mixed workload against every NoteResource endpoint, started like NoteResourceTest.
+ * Not part of the regular build, run it with:
+ *
+ *   ./mvnw test -Pload -Dload.concurrency=64 -Dload.duration=60
+ *
+ * Latencies go into one HDR histogram per operation, the report is written to target/load-report.json.
+ * To compare execution modes at high connection counts, run it once per mode:
+ *
+ *   ./mvnw test -Pload -Dload.concurrency=10000 -Dload.report=target/load-platform.json
+ *   ./mvnw test -Pload -Dload.concurrency=10000 -Dquarkus.virtual-threads.enabled=true -Dload.report=target/load-virtual.json
+ *   ./mvnw test -Pload -Dload.concurrency=10000 -Dapp.reactive.enabled=true -Dload.report=target/load-reactive.json
+ *
+ * Clients are asynchronous, so thousands of them do not need thousands of client threads. Heap and thread
+ * peaks are sampled in this JVM, which hosts both the application and the clients.
+ */
+@QuarkusTest
+@TestProfile(NoteLoadTest.Quiet.class)
+@Tag("load")
+public class NoteLoadTest {
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 16);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup", 5);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration", 30);
+    private static final int SEED_NOTES = Integer.getInteger("load.seed-notes", 1000);
+    private static final Path REPORT = Path.of(System.getProperty("load.report", "target/load-report.json"));
+
+    // Weights of the mix, reads dominate like in production
+    enum Operation {
+        LIST(25), LIST_FILTERED(15), GET(30), LATEST(10), CREATE(10), UPDATE(7), DELETE(3);
+
+        final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    // SQL logging would dominate every measurement
+    public static class Quiet implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("quarkus.hibernate-orm.log.sql", "false");
+        }
+    }
+
+    @TestHTTPResource("/notes")
+    URL notesUrl;
+
+    @Inject
+    @ConfigProperty(name = "app.api-key")
+    String apiKey;
+
+    @Inject
+    @ConfigProperty(name = "app.reactive.enabled", defaultValue = "false")
+    boolean reactive;
+
+    @Inject
+    @ConfigProperty(name = "quarkus.virtual-threads.enabled", defaultValue = "false")
+    boolean virtualThreads;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    // Ring of recently created ids that reads, updates and deletes pick from
+    private final AtomicIntegerArray knownIds = new AtomicIntegerArray(8192);
+    private final AtomicInteger nextSlot = new AtomicInteger();
+
+    @Test
+    public void mixedWorkload() throws Exception {
+        seed();
+
+        run(WARMUP_SECONDS, new Stats());
+        Stats stats = new Stats();
+        long elapsedNanos = run(DURATION_SECONDS, stats);
+
+        Map<String, Object> report = stats.report(elapsedNanos);
+        report.put("reactive", reactive);
+        report.put("virtualThreads", virtualThreads && Runtime.version().feature() >= 21);
+        Files.createDirectories(REPORT.toAbsolutePath().getParent());
+        mapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(REPORT.toFile(), report);
+
+        assertEquals(0L, report.get("failures"), "requests answered with an unexpected status");
+    }
+
+    private void seed() throws Exception {
+        int batch = 500;
+        for (int start = 0; start < SEED_NOTES; start += batch) {
+            StringBuilder body = new StringBuilder("[");
+            for (int i = start; i < Math.min(SEED_NOTES, start + batch); i++) {
+                if (i > start) body.append(',');
+                body.append(noteJson("seed " + i));
+            }
+            HttpResponse<String> response = send(write("/batch", "POST", body.append(']').toString()));
+            for (JsonNode item : mapper.readTree(response.body()).get("items")) {
+                remember(item.get("id").asInt());
+            }
+        }
+    }
+
+    private long run(int seconds, Stats stats) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch finished = new CountDownLatch(CONCURRENCY);
+
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(stats::sample, 0, 100, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < CONCURRENCY; i++) {
+            next(deadline, stats, finished);
+        }
+
+        finished.await(seconds + 60L, TimeUnit.SECONDS);
+        sampler.shutdownNow();
+        return System.nanoTime() - start;
+    }
+
+    // One client: sends its next request once the previous one is answered, until the deadline
+    private void next(long deadline, Stats stats, CountDownLatch finished) {
+        if (System.nanoTime() >= deadline) {
+            finished.countDown();
+            return;
+        }
+
+        Operation operation = pick();
+        long begin = System.nanoTime();
+        execute(operation).whenComplete((status, error) -> {
+            stats.record(operation, error != null ? -1 : status, System.nanoTime() - begin);
+            next(deadline, stats, finished);
+        });
+    }
+
+    private CompletableFuture<Integer> execute(Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (operation) {
+            case LIST -> status(read("?page=" + (1 + random.nextInt(10)) + "&sort=title,asc"));
+            case LIST_FILTERED -> status(read("?urgency=HIGH&title=seed " + random.nextInt(100) + "&sort=id,desc"));
+            case GET -> status(read("/" + anyId()));
+            case LATEST -> status(read("/latest"));
+            case CREATE -> sendAsync(write("", "POST", noteJson("load " + random.nextInt()))).thenApply(response -> {
+                if (response.statusCode() == 201) remember(idOf(response.body()));
+                return response.statusCode();
+            });
+            case UPDATE -> status(write("/" + anyId(), "PUT", "{\"urgency\":\"" + Urgency.values()[random.nextInt(3)] + "\"}"));
+            case DELETE -> status(write("/" + anyId(), "DELETE", null));
+        };
+    }
+
+    private HttpRequest read(String path) {
+        return HttpRequest.newBuilder(URI.create(notesUrl + path.replace(" ", "%20"))).GET().build();
+    }
+
+    private HttpRequest write(String path, String method, String body) {
+        return HttpRequest.newBuilder(URI.create(notesUrl + path))
+                .header("X-API-Key", apiKey)
+                .header("Content-Type", "application/json")
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private CompletableFuture<Integer> status(HttpRequest request) {
+        return sendAsync(request).thenApply(HttpResponse::statusCode);
+    }
+
+    private int idOf(String body) {
+        try {
+            return mapper.readTree(body).get("id").asInt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String noteJson(String title) {
+        Urgency urgency = Urgency.values()[ThreadLocalRandom.current().nextInt(3)];
+        return "{\"title\":\"" + title + "\",\"content\":\"content of " + title + "\",\"urgency\":\"" + urgency + "\"}";
+    }
+
+    private void remember(int id) {
+        knownIds.set(Math.floorMod(nextSlot.getAndIncrement(), knownIds.length()), id);
+    }
+
+    // May be an id that was deleted meanwhile, 404 is an expected answer
+    private int anyId() {
+        int id = knownIds.get(ThreadLocalRandom.current().nextInt(Math.min(nextSlot.get(), knownIds.length())));
+        return id > 0 ? id : 1;
+    }
+
+    private static Operation pick() {
+        int total = 0;
+        for (Operation operation : Operation.values()) total += operation.weight;
+        int roll = ThreadLocalRandom.current().nextInt(total);
+        for (Operation operation : Operation.values()) {
+            roll -= operation.weight;
+            if (roll < 0) return operation;
+        }
+        throw new IllegalStateException();
+    }
+
+    private static class Stats {
+        private final Map<Operation, Histogram> latencies = new ConcurrentHashMap<>();
+        private final Map<Operation, Map<Integer, LongAdder>> statuses = new ConcurrentHashMap<>();
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private final AtomicLong peakHeapBytes = new AtomicLong();
+        private final AtomicLong peakThreads = new AtomicLong();
+
+        Stats() {
+            for (Operation operation : Operation.values()) {
+                // microseconds, up to one minute with three significant digits
+                latencies.put(operation, new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3));
+                statuses.put(operation, new ConcurrentHashMap<>());
+            }
+        }
+
+        void record(Operation operation, int status, long nanos) {
+            latencies.get(operation).recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), TimeUnit.MINUTES.toMicros(1)));
+            statuses.get(operation).computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+
+        // Platform threads only, virtual threads are not counted by the thread MXBean
+        void sample() {
+            peakHeapBytes.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            peakThreads.accumulateAndGet(threads.getThreadCount(), Math::max);
+        }
+
+        Map<String, Object> report(long elapsedNanos) {
+            double seconds = elapsedNanos / 1e9;
+            Histogram all = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+            long failures = 0;
+
+            Map<String, Object> operations = new LinkedHashMap<>();
+            for (Operation operation : Operation.values()) {
+                Histogram histogram = latencies.get(operation);
+                all.add(histogram);
+
+                Map<String, Long> byStatus = new LinkedHashMap<>();
+                for (Map.Entry<Integer, LongAdder> entry : statuses.get(operation).entrySet()) {
+                    byStatus.put(String.valueOf(entry.getKey()), entry.getValue().sum());
+                    if (!isExpected(operation, entry.getKey())) failures += entry.getValue().sum();
+                }
+
+                Map<String, Object> entry = summary(histogram, seconds);
+                entry.put("statuses", byStatus);
+                operations.put(operation.name().toLowerCase(), entry);
+            }
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("concurrency", CONCURRENCY);
+            report.put("durationSeconds", seconds);
+            report.put("seedNotes", SEED_NOTES);
+            report.put("total", summary(all, seconds));
+            report.put("failures", failures);
+            report.put("peakHeapUsedMb", peakHeapBytes.get() / (1024 * 1024));
+            report.put("peakThreads", peakThreads.get());
+            report.put("operations", operations);
+            return report;
+        }
+
+        private static Map<String, Object> summary(Histogram histogram, double seconds) {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", histogram.getTotalCount());
+            summary.put("throughputPerSecond", histogram.getTotalCount() / seconds);
+            summary.put("p50Millis", histogram.getValueAtPercentile(50) / 1000.0);
+            summary.put("p99Millis", histogram.getValueAtPercentile(99) / 1000.0);
+            summary.put("p999Millis", histogram.getValueAtPercentile(99.9) / 1000.0);
+            summary.put("maxMillis", histogram.getMaxValue() / 1000.0);
+            return summary;
+        }
+
+        /*
+         * Ids are picked from a ring that also holds deleted notes, so 404 is fine for id based calls.
+         * Two writers racing on the same note lose with 412 on the version check.
+         */
+        private static boolean isExpected(Operation operation, int status) {
+            return switch (operation) {
+                case CREATE -> status == 201;
+                case DELETE -> status == 204 || status == 404 || status == 412;
+                case UPDATE -> status == 200 || status == 404 || status == 412;
+                case GET -> status == 200 || status == 404;
+                default -> status == 200;
+            };
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.onur.bootcamp;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
 import io.quarkus.test.junit.QuarkusTest;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
@@ -8,17 +12,65 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.number.OrderingComparison.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
 public class NoteResourceTest {
     @Inject
     EntityManager em;
 
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    DataSource dataSource;
+
+    @Inject
+    AdmissionController admission;
+
+    @Inject
+    NoteQueries noteQueries;
+
+    @TestHTTPResource("/notes/changes")
+    URI changesUri;
+
     @BeforeEach
     @Transactional
     public void cleanDb() {
@@ -85,6 +137,353 @@ public class NoteResourceTest {
                 .statusCode(400);
     }
 
+    @Test
+    public void testPostNotesBatch() {
+        var result = given()
+                .header("X-API-Key", API_KEY)
+                .contentType("application/json")
+                .body("[{\"content\":\"batch one\",\"title\":\"batch one\",\"urgency\":\"HIGH\"},"
+                        + "{\"content\":\"\",\"title\":\"batch two\"},"
+                        + "{\"content\":\"batch three\",\"title\":\"batch three\"}]")
+                .when().post("/notes/batch")
+                .then()
+                .statusCode(200)
+                .body("created", equalTo(2))
+                .body("rejected", equalTo(1))
+                .body("items.index", contains(0, 1, 2))
+                .body("items.status", contains(201, 400, 201))
+                .body("items[1].error", equalTo("Content cannot be blank"))
+                .extract().body().jsonPath();
+
+        given().when().get("/notes/" + result.getInt("items[0].id"))
+                .then().statusCode(200)
+                .body("title", equalTo("batch one"))
+                .body("urgency", equalTo("HIGH"));
+        given().when().get("/notes/" + result.getInt("items[2].id"))
+                .then().statusCode(200)
+                .body("urgency", equalTo("LOW"));
+    }
+
+    @Test
+    public void testIdSequenceStartsAboveExistingIds() throws Exception {
+        // A row from before the id sequence, with the sequence about to hand out its id again
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO Note (id, title, content, urgency, title_lower, content_lower, version)"
+                    + " VALUES (1000000, 'legacy', 'legacy', 0, 'legacy', 'legacy', 0)");
+            statement.executeUpdate("ALTER SEQUENCE note_seq RESTART WITH 1000000");
+
+            noteQueries.seedIdSequence(null);
+
+            try (ResultSet next = statement.executeQuery("SELECT NEXT VALUE FOR note_seq")) {
+                assertTrue(next.next());
+                assertTrue(next.getLong(1) - Note.ID_ALLOCATION_SIZE >= 1000000);
+            }
+            statement.executeUpdate("DELETE FROM Note WHERE id = 1000000");
+        }
+    }
+
+    @Test
+    public void testBackfill_VersionOfOlderRows() throws Exception {
+        // A row from before the version column
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO Note (id, title, content, urgency, title_lower, content_lower, version)"
+                    + " VALUES (2000000, 'unversioned', 'unversioned', 0, 'unversioned', 'unversioned', NULL)");
+
+            noteQueries.backfill(null);
+
+            try (ResultSet version = statement.executeQuery("SELECT version FROM Note WHERE id = 2000000")) {
+                assertTrue(version.next());
+                assertEquals(0, version.getInt(1));
+                assertFalse(version.wasNull());
+            }
+            statement.executeUpdate("DELETE FROM Note WHERE id = 2000000");
+        }
+    }
+
+    @Test
+    public void testPostNote_TitleThatGrowsWhenLowercased() {
+        // A dotted capital I lowercases to two characters
+        String title = "\\u0130".repeat(50);
+        String content = "\\u0130".repeat(300);
+        int id = given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"content\":\"" + content + "\",\"title\":\"" + title + "\"}")
+                .when().post("/notes")
+                .then().statusCode(201)
+                .extract().path("id");
+
+        given().when().get("/notes?title=i\u0307i\u0307&sort=title")
+                .then().statusCode(200)
+                .body("id", hasItem(id));
+    }
+
+    @Test
+    public void testBackfill_WidensLowercaseColumns() throws Exception {
+        // Column lengths of older databases
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE Note ALTER COLUMN content SET DATA TYPE VARCHAR(255)");
+            statement.executeUpdate("ALTER TABLE Note ALTER COLUMN title_lower SET DATA TYPE VARCHAR(50)");
+            statement.executeUpdate("ALTER TABLE Note ALTER COLUMN content_lower SET DATA TYPE VARCHAR(300)");
+
+            noteQueries.backfill(null);
+
+            try (ResultSet lengths = statement.executeQuery("SELECT COLUMN_NAME, CHARACTER_MAXIMUM_LENGTH"
+                    + " FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'NOTE'"
+                    + " AND COLUMN_NAME IN ('CONTENT', 'TITLE_LOWER', 'CONTENT_LOWER') ORDER BY COLUMN_NAME")) {
+                assertTrue(lengths.next());
+                assertEquals(300, lengths.getInt(2));
+                assertTrue(lengths.next());
+                assertEquals(600, lengths.getInt(2));
+                assertTrue(lengths.next());
+                assertEquals(100, lengths.getInt(2));
+            }
+        }
+    }
+
+    @Test
+    public void testPostNote_RateLimitedPerKey() {
+        // Configured by its hash only, with a burst of two writes
+        for (int i = 0; i < 2; i++) {
+            given().header("X-API-Key", "limitedkey").contentType("application/json")
+                    .body("{\"content\":\"limited\",\"title\":\"limited\"}")
+                    .when().post("/notes").then().statusCode(201);
+        }
+
+        given().header("X-API-Key", "limitedkey").contentType("application/json")
+                .body("{\"content\":\"limited\",\"title\":\"limited\"}")
+                .when().post("/notes")
+                .then().statusCode(429)
+                .header("Retry-After", notNullValue())
+                .body("status", is(429));
+
+        // Other keys keep their own quota, reads need none
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"content\":\"unlimited\",\"title\":\"unlimited\"}")
+                .when().post("/notes").then().statusCode(201);
+        given().when().get("/notes?title=limited").then().statusCode(200);
+        given().header("X-API-Key", "not-a-key").contentType("application/json")
+                .body("{\"content\":\"unknown\",\"title\":\"unknown\"}")
+                .when().post("/notes").then().statusCode(401);
+    }
+
+    @Test
+    public void testAdmission_ShedsBulkBeforeReads() throws Exception {
+        // Fill every slot bulk work may take with calls that wait for the latch
+        int bulkSlots = Math.max(1, (int) (admission.limit() * AdmissionControlled.Kind.BULK.share));
+        CountDownLatch admitted = new CountDownLatch(bulkSlots);
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Object>> held = new ArrayList<>();
+        for (int i = 0; i < bulkSlots; i++) {
+            held.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return admission.call(AdmissionControlled.Kind.BULK, () -> {
+                        admitted.countDown();
+                        return release.await(10, TimeUnit.SECONDS);
+                    });
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+
+        try {
+            assertTrue(admitted.await(10, TimeUnit.SECONDS));
+
+            given().header("X-API-Key", API_KEY).contentType("application/json")
+                    .body("[{\"content\":\"shed\",\"title\":\"shed\"}]")
+                    .when().post("/notes/batch")
+                    .then().statusCode(503)
+                    .header("Retry-After", "1")
+                    .body("status", is(503));
+
+            // Reads still have room
+            given().when().get("/notes?page=1&size=5&sort=id,asc").then().statusCode(200);
+        } finally {
+            release.countDown();
+            for (CompletableFuture<Object> call : held) {
+                call.get(10, TimeUnit.SECONDS);
+            }
+        }
+
+        given().when().get("/q/metrics")
+                .then().statusCode(200)
+                .body(containsString("notes_admission_limit"))
+                .body(containsString("notes_admission_rejected_total{kind=\"bulk\"}"));
+    }
+
+    @Test
+    public void testAdmission_OnlyCacheMissesAreAdmitted() throws Exception {
+        int cached = given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"content\":\"cached\",\"title\":\"cached\"}")
+                .when().post("/notes")
+                .then().statusCode(201)
+                .extract().path("id");
+        given().when().get("/notes/" + cached).then().statusCode(200);
+
+        // Fill every slot reads may take with calls that wait for the latch
+        int readSlots = Math.max(1, (int) (admission.limit() * AdmissionControlled.Kind.READ.share));
+        CountDownLatch admitted = new CountDownLatch(readSlots);
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Object>> held = new ArrayList<>();
+        for (int i = 0; i < readSlots; i++) {
+            held.add(CompletableFuture.supplyAsync(() -> admission.supply(AdmissionControlled.Kind.READ, () -> {
+                admitted.countDown();
+                try {
+                    return release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            })));
+        }
+
+        try {
+            assertTrue(admitted.await(10, TimeUnit.SECONDS));
+
+            given().when().get("/notes/" + cached).then().statusCode(200);
+            given().when().get("/notes/2000001")
+                    .then().statusCode(503)
+                    .header("Retry-After", "1");
+            // Ranked in memory, the hit is loaded from the cache
+            given().when().get("/notes/search?q=cached").then().statusCode(200);
+        } finally {
+            release.countDown();
+            for (CompletableFuture<Object> call : held) {
+                call.get(10, TimeUnit.SECONDS);
+            }
+        }
+
+        given().when().get("/notes/2000001").then().statusCode(404);
+    }
+
+    @Test
+    public void testAdmission_LimitFollowsLatency() throws Exception {
+        AdmissionController controller = new AdmissionController();
+        controller.enabled = true;
+        controller.initialLimit = 20;
+        controller.minLimit = 2;
+        controller.maxLimit = 200;
+        controller.maxLatency = Duration.ofMillis(100);
+        controller.backoff = 0.9;
+        controller.retryAfter = Duration.ofSeconds(1);
+        controller.registry = new SimpleMeterRegistry();
+        controller.init();
+
+        long start = System.nanoTime();
+        long slow = TimeUnit.MILLISECONDS.toNanos(200);
+        controller.onSample(start, start + slow, 10);
+        assertEquals(18, controller.limit(), 1e-9);
+
+        // Started before the cut, it does not count again
+        controller.onSample(start + 1, start + slow + 1, 10);
+        assertEquals(18, controller.limit(), 1e-9);
+
+        // Fast calls with the limit half used grow it by about one per limit calls
+        for (int i = 0; i < 18; i++) {
+            controller.onSample(start + slow + 2, start + slow + 3, 10);
+        }
+        assertEquals(19, controller.limit(), 0.1);
+
+        // Fast calls with most of the limit idle leave it alone
+        controller.onSample(start + slow + 2, start + slow + 3, 1);
+        assertEquals(19, controller.limit(), 0.1);
+
+        // A slow bulk call is sized by its input, it does not cut the limit
+        double before = controller.limit();
+        controller.maxLatency = Duration.ofMillis(1);
+        controller.call(AdmissionControlled.Kind.BULK, () -> {
+            Thread.sleep(20);
+            return null;
+        });
+        assertEquals(before, controller.limit(), 1e-9);
+    }
+
+    @Test
+    public void testGroupCommit_ShedBatchIsNotRetriedPerNote() throws Exception {
+        AtomicInteger singleCreates = new AtomicInteger();
+        NoteGroupCommitter committer = new NoteGroupCommitter();
+        committer.noteService = new NoteService() {
+            @Override
+            public void createNotes(List<Note> notes) {
+                throw new OverloadedException("Database is busy, retry later", 1);
+            }
+
+            @Override
+            public void createNote(Note note) {
+                singleCreates.incrementAndGet();
+            }
+        };
+        committer.enabled = true;
+        committer.maxBatch = 10;
+        committer.maxDelay = Duration.ofMillis(5);
+        committer.maxQueued = 10;
+        committer.init();
+        try {
+            CompletableFuture<Note> created = committer.submit(new Note(null, "shed", "shed", Urgency.LOW));
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> created.get(5, TimeUnit.SECONDS));
+            assertTrue(failure.getCause() instanceof OverloadedException);
+            assertEquals(0, singleCreates.get());
+        } finally {
+            committer.shutdown();
+        }
+    }
+
+    @Test
+    public void testPostNotesBatch_InvalidInputs() {
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("[]").when().post("/notes/batch").then().statusCode(400);
+
+        given().contentType("application/json")
+                .body("[{\"content\":\"no key\",\"title\":\"no key\"}]")
+                .when().post("/notes/batch").then().statusCode(401);
+    }
+
+    @Test
+    public void testImportNotes() {
+        String body = "{\"content\":\"import one\",\"title\":\"import one\",\"urgency\":\"HIGH\"}\n"
+                + "not json\n"
+                + "\n"
+                + "{\"content\":\"\",\"title\":\"import blank\"}\r\n"
+                + "{\"content\":\"import two\",\"title\":\"import two\"}";
+
+        given()
+                .header("X-API-Key", API_KEY)
+                .contentType("application/x-ndjson")
+                .body(body.getBytes(StandardCharsets.UTF_8))
+                .when().post("/notes/import")
+                .then()
+                .statusCode(200)
+                .body("accepted", equalTo(2))
+                .body("rejected", equalTo(2))
+                .body("errors.line", contains(2, 4))
+                .body("errors[1].error", equalTo("Content cannot be blank"))
+                .body("errorsTruncated", is(false));
+
+        given().when().get("/notes?title=import")
+                .then().statusCode(200)
+                .body("title", containsInAnyOrder("import one", "import two"));
+
+        given().contentType("application/x-ndjson")
+                .body("{\"content\":\"no key\",\"title\":\"no key\"}".getBytes(StandardCharsets.UTF_8))
+                .when().post("/notes/import").then().statusCode(401);
+    }
+
+    @Test
+    public void testBodyLimit_OnlyImportTakesLargeBodies() {
+        // Over app.http.max-body-size, blank lines are skipped by the import
+        String padding = "\n".repeat(1_100_000);
+        String note = "{\"content\":\"large body\",\"title\":\"large body\"}";
+
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body((note + padding).getBytes(StandardCharsets.UTF_8))
+                .when().post("/notes")
+                .then().statusCode(413);
+
+        given().header("X-API-Key", API_KEY).contentType("application/x-ndjson")
+                .body((note + padding).getBytes(StandardCharsets.UTF_8))
+                .when().post("/notes/import")
+                .then().statusCode(200)
+                .body("accepted", equalTo(1));
+    }
+
     // --- GET Tests ---
 
     @Test
@@ -120,6 +519,35 @@ public class NoteResourceTest {
                 .body("title", hasItem("lorem ipsum"));
     }
 
+    @Test
+    public void testGetNotes_TitleFilterFollowsWrites() {
+        int noteId = given()
+                .header("X-API-Key", API_KEY)
+                .contentType("application/json")
+                .body("{\"content\":\"trigram\",\"title\":\"Quarterly Report\",\"urgency\":\"MEDIUM\"}")
+                .when().post("/notes")
+                .then()
+                .statusCode(201)
+                .extract()
+                .body().jsonPath().getInt("id");
+
+        given().when().get("/notes?title=RLY rep").then().statusCode(200).body("id", hasItem(noteId));
+        given().when().get("/notes?title=rly rep&urgency=medium").then().statusCode(200).body("id", hasItem(noteId));
+        given().when().get("/notes?title=rly rep&urgency=high").then().statusCode(200).body("size()", equalTo(0));
+        given().when().get("/notes?title=ly").then().statusCode(200).body("id", hasItem(noteId));
+
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"title\":\"Annual Summary\"}")
+                .when().put("/notes/" + noteId).then().statusCode(200);
+
+        given().when().get("/notes?title=rly rep").then().statusCode(200).body("size()", equalTo(0));
+        given().when().get("/notes?title=al summ").then().statusCode(200).body("id", hasItem(noteId));
+
+        given().header("X-API-Key", API_KEY).when().delete("/notes/" + noteId).then().statusCode(204);
+
+        given().when().get("/notes?title=al summ").then().statusCode(200).body("size()", equalTo(0));
+    }
+
     @Test
     public void testGetNotes_WithSizeLimit() {
         given()
@@ -230,6 +658,574 @@ public class NoteResourceTest {
                 .body("content", hasItem("omega"));
     }
 
+    @Test
+    public void testGetNotes_CursorPagination() {
+        String[][] notes = {
+                {"kilo", "LOW"}, {"Alpha", "HIGH"}, {"echo", "MEDIUM"},
+                {"alpha", "LOW"}, {"zulu", "HIGH"}, {"Mike", "LOW"}, {"echo", "HIGH"}
+        };
+        for (String[] note : notes) {
+            given().header("X-API-Key", API_KEY).contentType("application/json")
+                    .body("{\"content\":\"" + note[0] + "\",\"title\":\"" + note[0] + "\",\"urgency\":\"" + note[1] + "\"}")
+                    .when().post("/notes").then().statusCode(201);
+        }
+
+        // Walking the cursors must visit the same notes in the same order as one large page
+        for (String sort : new String[]{"id,asc", "id,desc", "title,asc", "title,desc",
+                "urgency,asc", "urgency,desc", "content,asc", "content,desc"}) {
+            List<Integer> expected = given()
+                    .when().get("/notes?size=100&sort=" + sort)
+                    .then().statusCode(200)
+                    .extract().body().jsonPath().getList("id", Integer.class);
+
+            List<Integer> crawled = new ArrayList<>();
+            String cursor = null;
+            do {
+                var response = given()
+                        .queryParam("size", 2)
+                        .queryParam("sort", sort)
+                        .queryParam("after", cursor == null ? "" : cursor)
+                        .when().get("/notes")
+                        .then().statusCode(200)
+                        .extract();
+                crawled.addAll(response.body().jsonPath().getList("id", Integer.class));
+                cursor = response.header("X-Next-Cursor");
+            } while (cursor != null);
+
+            assertEquals(expected, crawled, "cursor pages for sort " + sort);
+        }
+    }
+
+    @Test
+    public void testGetNotes_InvalidCursor() {
+        for (int i = 0; i < 2; i++) {
+            given().header("X-API-Key", API_KEY).contentType("application/json")
+                    .body("{\"content\":\"cursor\",\"title\":\"cursor\"}")
+                    .when().post("/notes").then().statusCode(201);
+        }
+
+        given().when().get("/notes?after=not-a-cursor")
+                .then().statusCode(400);
+
+        // A cursor handed out for one sort cannot continue another one
+        String cursor = given().when().get("/notes?size=1&sort=title,asc")
+                .then().statusCode(200)
+                .extract().header("X-Next-Cursor");
+
+        given().when().get("/notes?size=1&sort=id,asc&after=" + cursor)
+                .then().statusCode(400);
+    }
+
+    @Test
+    public void testGetNotes_EncodedResponsesFollowWrites() {
+        int noteId = given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"content\":\"encoded\",\"title\":\"encoded once\",\"urgency\":\"HIGH\"}")
+                .when().post("/notes").then().statusCode(201)
+                .extract().body().jsonPath().getInt("id");
+
+        // Second reads are answered from the encoded bytes, they must look the same
+        for (int i = 0; i < 2; i++) {
+            given().when().get("/notes")
+                    .then().statusCode(200)
+                    .contentType("application/json")
+                    .header("X-Total-Count", notNullValue())
+                    .body("title", hasItem("encoded once"));
+            given().when().get("/notes/" + noteId)
+                    .then().statusCode(200)
+                    .contentType("application/json")
+                    .body("title", is("encoded once"))
+                    .body("version", is(0));
+        }
+
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"title\":\"encoded twice\"}")
+                .when().put("/notes/" + noteId).then().statusCode(200);
+
+        given().when().get("/notes/" + noteId)
+                .then().statusCode(200)
+                .body("title", is("encoded twice"))
+                .body("version", is(1));
+        given().when().get("/notes")
+                .then().statusCode(200)
+                .body("title", hasItem("encoded twice"))
+                .body("title", not(hasItem("encoded once")));
+        given().when().get("/notes/latest")
+                .then().statusCode(200)
+                .contentType("application/json")
+                .body("title", is("encoded twice"));
+    }
+
+    @Test
+    public void testGetNotes_TotalCount() {
+        int before = Integer.parseInt(given().when().get("/notes?urgency=MEDIUM&size=1")
+                .then().statusCode(200)
+                .extract().header("X-Total-Count"));
+
+        for (int i = 0; i < 3; i++) {
+            given().header("X-API-Key", API_KEY).contentType("application/json")
+                    .body("{\"content\":\"tally " + i + "\",\"title\":\"tally " + i + "\",\"urgency\":\"MEDIUM\"}")
+                    .when().post("/notes").then().statusCode(201);
+        }
+
+        // The total covers all matching notes, not only the page
+        given().when().get("/notes?urgency=MEDIUM&size=1")
+                .then().statusCode(200)
+                .header("X-Total-Count", String.valueOf(before + 3))
+                .body("size()", is(1));
+        given().when().get("/notes?title=tally&size=1&fields=id")
+                .then().statusCode(200)
+                .header("X-Total-Count", "3");
+        given().when().get("/notes?title=tally&urgency=MEDIUM")
+                .then().statusCode(200)
+                .header("X-Total-Count", "3");
+        given().when().get("/notes?title=tally&urgency=HIGH")
+                .then().statusCode(200)
+                .header("X-Total-Count", "0");
+    }
+
+    @Test
+    public void testGetNotes_Fields() {
+        for (String title : new String[]{"fields a", "fields b", "fields c"}) {
+            given().header("X-API-Key", API_KEY).contentType("application/json")
+                    .body("{\"content\":\"" + title + " content\",\"title\":\"" + title + "\",\"urgency\":\"HIGH\"}")
+                    .when().post("/notes").then().statusCode(201);
+        }
+
+        given().when().get("/notes?fields=title,urgency&sort=title,asc")
+                .then().statusCode(200)
+                .body("title", contains("fields a", "fields b", "fields c"))
+                .body("urgency", everyItem(is("HIGH")))
+                .body("[0]", not(hasKey("id")))
+                .body("[0]", not(hasKey("content")));
+
+        // The cursor is built from the sort key and id even when neither is returned
+        List<String> crawled = new ArrayList<>();
+        String cursor = null;
+        do {
+            var response = given()
+                    .queryParam("size", 2)
+                    .queryParam("sort", "content,desc")
+                    .queryParam("fields", "title")
+                    .queryParam("after", cursor == null ? "" : cursor)
+                    .when().get("/notes")
+                    .then().statusCode(200)
+                    .extract();
+            crawled.addAll(response.body().jsonPath().getList("title", String.class));
+            cursor = response.header("X-Next-Cursor");
+        } while (cursor != null);
+        assertEquals(List.of("fields c", "fields b", "fields a"), crawled);
+
+        given().when().get("/notes?fields=title,secret")
+                .then().statusCode(400);
+    }
+
+    @Test
+    public void testMetrics_PrometheusEndpoint() {
+        given().when().get("/notes?urgency=HIGH&title=me&sort=title,asc").then().statusCode(200);
+        given().header("X-API-Key", "wrong").contentType("application/json")
+                .body("{\"title\":\"t\",\"content\":\"c\"}")
+                .when().post("/notes").then().statusCode(401);
+
+        given().when().get("/q/metrics")
+                .then()
+                .statusCode(200)
+                .body(containsString("notes_query_seconds_count{filter=\"title+urgency\""))
+                .body(containsString("notes_query_rows_bucket{"))
+                .body(containsString("sort=\"title,asc\""))
+                .body(containsString("notes_auth_seconds_count{result=\"rejected\""))
+                .body(containsString("notes_serialization_seconds_count{"))
+                .body(containsString("cache_gets_total{cache=\"notes\""))
+                .body(containsString("http_server_requests_seconds_count{method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/notes\""));
+    }
+
+    @Test
+    public void testGetNoteById_Cached() {
+        int noteId = given()
+                .header("X-API-Key", API_KEY)
+                .contentType("application/json")
+                .body("{\"title\":\"cached\",\"content\":\"cached\",\"urgency\":\"LOW\"}")
+                .when().post("/notes")
+                .then()
+                .statusCode(201)
+                .extract()
+                .body().jsonPath().getInt("id");
+
+        long hitsBefore = given().when().get("/notes/cache/stats")
+                .then().statusCode(200)
+                .extract().body().jsonPath().getLong("hits");
+
+        given().when().get("/notes/" + noteId).then().statusCode(200).body("title", equalTo("cached"));
+        given().when().get("/notes/" + noteId).then().statusCode(200).body("title", equalTo("cached"));
+
+        given().when().get("/notes/cache/stats")
+                .then().statusCode(200)
+                .body("hits", greaterThanOrEqualTo((int) hitsBefore + 1));
+
+        // Writes evict the cached copy
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"title\":\"cached again\"}")
+                .when().put("/notes/" + noteId).then().statusCode(200);
+        given().when().get("/notes/" + noteId).then().statusCode(200).body("title", equalTo("cached again"));
+
+        given().header("X-API-Key", API_KEY).when().delete("/notes/" + noteId).then().statusCode(204);
+        given().when().get("/notes/" + noteId).then().statusCode(404);
+    }
+
+    @Test
+    public void testNoteCache_LoaderErrorDoesNotBlockLaterCalls() {
+        NoteCache cache = new NoteCache();
+        cache.maxSize = 10;
+        cache.expireAfterWrite = Duration.ofMinutes(1);
+        cache.registry = new SimpleMeterRegistry();
+        cache.init();
+
+        assertThrows(StackOverflowError.class, () -> cache.get(1, id -> { throw new StackOverflowError(); }));
+        Note loaded = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> cache.get(1, id -> new Note(id, "loaded", "loaded", Urgency.LOW)));
+        assertEquals("loaded", loaded.getTitle());
+    }
+
+    @Test
+    public void testGetChanges_LiveAndResumed() throws Exception {
+        String lastId;
+        try (EventStream stream = EventStream.open(changesUri, null)) {
+            // Headers may only arrive with the first event, create notes until the stream reports one
+            String seen = null;
+            for (int i = 0; i < 20 && seen == null; i++) {
+                given().header("X-API-Key", API_KEY).contentType("application/json")
+                        .body("{\"content\":\"feed\",\"title\":\"feed live " + i + "\"}")
+                        .when().post("/notes").then().statusCode(201);
+                seen = stream.next("data", Duration.ofMillis(500));
+            }
+            assertTrue(seen != null && seen.contains("feed live"), "no change event received");
+            lastId = stream.last("id");
+            assertEquals("created", stream.last("event"));
+        }
+
+        // Changes made while disconnected are replayed from the log
+        int noteId = given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"content\":\"feed\",\"title\":\"feed missed\"}")
+                .when().post("/notes").then().statusCode(201)
+                .extract().body().jsonPath().getInt("id");
+        given().header("X-API-Key", API_KEY).when().delete("/notes/" + noteId).then().statusCode(204);
+
+        try (EventStream stream = EventStream.open(changesUri, lastId)) {
+            List<String> events = new ArrayList<>();
+            String data;
+            while ((data = stream.next("data", Duration.ofSeconds(5))) != null && !data.contains("\"deleted\"")) {
+                events.add(stream.last("event") + " " + data);
+            }
+            assertTrue(data != null && data.contains("feed missed"), "deletion was not replayed");
+            assertTrue(events.stream().anyMatch(event -> event.startsWith("created") && event.contains("feed missed")), events.toString());
+        }
+
+        try (EventStream stream = EventStream.open(changesUri, "not-a-sequence")) {
+            assertEquals("reset", stream.next("event", Duration.ofSeconds(5)));
+        }
+
+        // A sequence without this process' epoch, as a client of the previous run would send it
+        String sequence = lastId.substring(lastId.indexOf('-') + 1);
+        try (EventStream stream = EventStream.open(changesUri, sequence)) {
+            assertEquals("reset", stream.next("event", Duration.ofSeconds(5)));
+        }
+    }
+
+    @Test
+    public void testChangeFeed_DisconnectsAfterMaxBuffered() {
+        NoteChangeFeed feed = new NoteChangeFeed();
+        feed.noteRevision = new NoteRevision();
+        feed.logSize = 10;
+        feed.maxBuffered = 2;
+        feed.init();
+
+        AssertSubscriber<NoteChange> client = feed.changes(null).subscribe().withSubscriber(AssertSubscriber.create(0));
+        Note note = new Note(1, "feed", "feed", Urgency.LOW);
+        feed.onNoteEvent(NoteEvent.created(note));
+        feed.onNoteEvent(NoteEvent.updated(note, Urgency.LOW));
+        client.assertNotTerminated();
+
+        feed.onNoteEvent(NoteEvent.deleted(note));
+        client.awaitFailure(failure -> assertTrue(failure instanceof BackPressureFailure));
+    }
+
+    // Reads an event stream line by line on its own thread, fields are looked up by name
+    static class EventStream implements AutoCloseable {
+        private final BlockingQueue<String[]> fields = new LinkedBlockingQueue<>();
+        private final Map<String, String> last = new HashMap<>();
+        private final CompletableFuture<HttpResponse<InputStream>> response;
+
+        private EventStream(URI uri, String lastEventId) {
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri).header("Accept", "text/event-stream");
+            if (lastEventId != null) {
+                request.header("Last-Event-ID", lastEventId);
+            }
+            response = HttpClient.newHttpClient().sendAsync(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            response.thenAcceptAsync(r -> {
+                try (BufferedReader lines = new BufferedReader(new InputStreamReader(r.body(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = lines.readLine()) != null) {
+                        int colon = line.indexOf(':');
+                        if (colon > 0) {
+                            fields.add(new String[]{line.substring(0, colon), line.substring(colon + 1).trim()});
+                        }
+                    }
+                } catch (IOException e) {
+                    // closed by the test
+                }
+            });
+        }
+
+        static EventStream open(URI uri, String lastEventId) {
+            return new EventStream(uri, lastEventId);
+        }
+
+        // Value of the next field with this name, null when none arrives in time
+        String next(String name, Duration timeout) throws InterruptedException {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            String[] field;
+            while ((field = fields.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null) {
+                last.put(field[0], field[1]);
+                if (field[0].equals(name)) return field[1];
+            }
+            return null;
+        }
+
+        String last(String name) {
+            return last.get(name);
+        }
+
+        @Override
+        public void close() throws Exception {
+            response.cancel(true);
+            if (response.isDone() && !response.isCompletedExceptionally() && !response.isCancelled()) {
+                response.get().body().close();
+            }
+        }
+    }
+
+    @Test
+    public void testSearch_SkippedWordsDoNotChangeTheRanking() {
+        NoteSearchIndex index = new NoteSearchIndex();
+        index.maxWindow = 1000;
+        // Fewer matches than the window, so a search for the whole window cannot skip anything
+        String[] vocabulary = {"the", "note", "meeting", "budget", "draft", "review", "quarter", "plan",
+                "launch", "invoice", "travel", "hiring", "roadmap", "incident", "retro", "offsite"};
+        Random random = new Random(7);
+        for (int id = 1; id <= 800; id++) {
+            StringBuilder title = new StringBuilder();
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 3; i++) {
+                // Skewed towards the first words, like real text
+                title.append(vocabulary[(int) (Math.pow(random.nextDouble(), 3) * vocabulary.length)]).append(' ');
+            }
+            for (int i = 5 + random.nextInt(25); i > 0; i--) {
+                content.append(vocabulary[(int) (Math.pow(random.nextDouble(), 3) * vocabulary.length)]).append(' ');
+            }
+            index.put(id, title.toString(), content.toString());
+        }
+        for (int id = 1; id <= 800; id += 13) {
+            index.remove(id);
+        }
+
+        for (String query : List.of("the", "budget", "the note", "the budget offsite", "retro incident roadmap hiring")) {
+            NoteSearchIndex.Result all = index.search(query, 0, 1000);
+            assertTrue(all.total() < 1000);
+            assertEquals(all.total(), all.hits().size());
+            for (int window : new int[]{1, 5, 20, 100}) {
+                for (int offset : new int[]{0, window}) {
+                    NoteSearchIndex.Result page = index.search(query, offset, window);
+                    assertEquals(all.total(), page.total(), query);
+                    List<NoteSearchIndex.Hit> expected = all.hits()
+                            .subList(Math.min(offset, all.hits().size()), Math.min(offset + window, all.hits().size()));
+                    assertEquals(expected.size(), page.hits().size(), query);
+                    for (int i = 0; i < expected.size(); i++) {
+                        assertEquals(expected.get(i).id(), page.hits().get(i).id(), query);
+                        assertEquals(expected.get(i).score(), page.hits().get(i).score(), 1e-9, query);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSearch_RanksByRelevance() {
+        // Words of their own, other tests' notes must not match
+        String word = "quasar" + System.nanoTime();
+        int strong = given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"content\":\"" + word + " and " + word + " again\",\"title\":\"All about " + word + "\"}")
+                .when().post("/notes").then().statusCode(201)
+                .extract().body().jsonPath().getInt("id");
+        int weak = given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"content\":\"A long text that mentions " + word.toUpperCase() + " only once among many other words\",\"title\":\"Other\"}")
+                .when().post("/notes").then().statusCode(201)
+                .extract().body().jsonPath().getInt("id");
+
+        given().when().get("/notes/search?q=" + word)
+                .then().statusCode(200)
+                .header("X-Total-Count", "2")
+                .body("note.id", contains(strong, weak))
+                .body("[0].score", greaterThan(0f));
+
+        given().when().get("/notes/search?q=" + word + "&page=2&size=1")
+                .then().statusCode(200)
+                .body("note.id", contains(weak));
+
+        // Follows updates and deletes
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"content\":\"nothing to see\",\"title\":\"renamed\"}")
+                .when().put("/notes/" + strong).then().statusCode(200);
+        given().header("X-API-Key", API_KEY).when().delete("/notes/" + weak).then().statusCode(204);
+        given().when().get("/notes/search?q=" + word)
+                .then().statusCode(200)
+                .header("X-Total-Count", "0")
+                .body("size()", is(0));
+
+        given().queryParam("q", " - ").when().get("/notes/search").then().statusCode(400);
+        given().when().get("/notes/search?q=" + word + "&page=1000&size=100").then().statusCode(400);
+    }
+
+    @Test
+    public void testGetStats() {
+        var before = given().when().get("/notes/stats")
+                .then().statusCode(200)
+                .extract().body().jsonPath();
+
+        int noteId = given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"content\":\"counted\",\"title\":\"counted\",\"urgency\":\"HIGH\"}")
+                .when().post("/notes")
+                .then().statusCode(201)
+                .extract().body().jsonPath().getInt("id");
+
+        given().when().get("/notes/stats")
+                .then().statusCode(200)
+                .body("total", is(before.getInt("total") + 1))
+                .body("byUrgency.HIGH", is(before.getInt("byUrgency.HIGH") + 1))
+                .body("byUrgency.LOW", is(before.getInt("byUrgency.LOW")));
+
+        // Moves between urgencies, a title change alone does not
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"urgency\":\"LOW\"}")
+                .when().put("/notes/" + noteId).then().statusCode(200);
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"title\":\"still counted\"}")
+                .when().put("/notes/" + noteId).then().statusCode(200);
+
+        given().when().get("/notes/stats")
+                .then().statusCode(200)
+                .body("total", is(before.getInt("total") + 1))
+                .body("byUrgency.HIGH", is(before.getInt("byUrgency.HIGH")))
+                .body("byUrgency.LOW", is(before.getInt("byUrgency.LOW") + 1));
+
+        given().header("X-API-Key", API_KEY).when().delete("/notes/" + noteId).then().statusCode(204);
+
+        given().when().get("/notes/stats")
+                .then().statusCode(200)
+                .body("total", is(before.getInt("total")))
+                .body("byUrgency.LOW", is(before.getInt("byUrgency.LOW")))
+                .body("byUrgency.MEDIUM", is(before.getInt("byUrgency.MEDIUM")));
+    }
+
+    @Test
+    public void testGetLatestNote() {
+        int firstId = given()
+                .header("X-API-Key", API_KEY)
+                .contentType("application/json")
+                .body("{\"title\":\"older\",\"content\":\"older\"}")
+                .when().post("/notes")
+                .then().statusCode(201)
+                .extract().body().jsonPath().getInt("id");
+        int secondId = given()
+                .header("X-API-Key", API_KEY)
+                .contentType("application/json")
+                .body("{\"title\":\"newer\",\"content\":\"newer\"}")
+                .when().post("/notes")
+                .then().statusCode(201)
+                .extract().body().jsonPath().getInt("id");
+
+        given().when().get("/notes/latest").then().statusCode(200).body("id", equalTo(secondId));
+
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"title\":\"newer edited\"}")
+                .when().put("/notes/" + secondId).then().statusCode(200);
+        given().when().get("/notes/latest").then().statusCode(200).body("title", equalTo("newer edited"));
+
+        // Deleting the latest note falls back to the database for its predecessor
+        given().header("X-API-Key", API_KEY).when().delete("/notes/" + secondId).then().statusCode(204);
+        given().when().get("/notes/latest").then().statusCode(200).body("id", equalTo(firstId));
+    }
+
+    @Test
+    public void testReadiness() {
+        given().when().get("/q/health/ready")
+                .then().statusCode(200)
+                .body("status", equalTo("UP"));
+    }
+
+    @Test
+    public void testExportNotes() {
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("[{\"content\":\"export a\",\"title\":\"export a\",\"urgency\":\"HIGH\"},"
+                        + "{\"content\":\"export b\",\"title\":\"export b\",\"urgency\":\"LOW\"},"
+                        + "{\"content\":\"export c\",\"title\":\"other\",\"urgency\":\"HIGH\"}]")
+                .when().post("/notes/batch").then().statusCode(200).body("created", equalTo(3));
+
+        String all = given().when().get("/notes/export")
+                .then().statusCode(200)
+                .contentType(startsWith("application/x-ndjson"))
+                .extract().asString();
+        String[] lines = all.split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].contains("\"title\":\"export a\""));
+        assertTrue(lines[2].contains("\"title\":\"other\""));
+
+        String filtered = given().when().get("/notes/export?urgency=high&title=EXPORT")
+                .then().statusCode(200)
+                .extract().asString();
+        assertEquals(1, filtered.split("\n").length);
+        assertTrue(filtered.contains("\"content\":\"export a\""));
+    }
+
+    @Test
+    public void testGetNotes_EveryListShapeUsesAnIndex() throws Exception {
+        int noteId = given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"title\":\"Indexed plan\",\"content\":\"plan content\",\"urgency\":\"HIGH\"}")
+                .when().post("/notes")
+                .then().statusCode(201)
+                .extract().body().jsonPath().getInt("id");
+        Note last = new Note(noteId, "plan content", "Indexed plan", Urgency.HIGH);
+
+        // No title, a fragment too short for the trigram index, and one it answers with an id list
+        String[] titles = {null, "pl", "ndexed pla"};
+        List<String> sql = new ArrayList<>();
+        for (String field : List.of("urgency", "title", "content", "id")) {
+            for (String order : List.of("asc", "desc")) {
+                NoteSort sort = NoteSort.parse(field + "," + order);
+                for (String title : titles) {
+                    for (Urgency urgency : new Urgency[]{null, Urgency.HIGH}) {
+                        for (NoteCursor cursor : new NoteCursor[]{null, NoteCursor.after(last, sort)}) {
+                            SqlRecorder.start();
+                            noteService.getAllNotes(1, 10, sort.getField() + "," + sort.getOrder(), urgency, title, cursor);
+                            sql.addAll(SqlRecorder.stop());
+                        }
+                    }
+                }
+            }
+        }
+
+        assertEquals(8 * 3 * 2 * 2, sql.size());
+        try (Connection connection = dataSource.getConnection()) {
+            for (String statement : sql) {
+                // H2 explains a statement with unbound parameters
+                try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + statement);
+                     ResultSet plan = explain.executeQuery()) {
+                    assertTrue(plan.next());
+                    String text = plan.getString(1);
+                    assertFalse(text.contains("tableScan"), "No index used for " + statement + "\n" + text);
+                }
+            }
+        }
+    }
+
     // --- PUT Tests (now split out) ---
 
     @Test
@@ -337,6 +1333,98 @@ public class NoteResourceTest {
         given().when().get("/notes/" + noteId).then().statusCode(200).body("id", equalTo(noteId));
     }
 
+    // --- Conditional request Tests ---
+
+    @Test
+    public void testGetNote_ETag() {
+        int noteId = given()
+                .header("X-API-Key", API_KEY)
+                .contentType("application/json")
+                .body("{\"title\":\"etag\",\"content\":\"etag\"}")
+                .when().post("/notes")
+                .then().statusCode(201)
+                .extract().body().jsonPath().getInt("id");
+
+        String etag = given().when().get("/notes/" + noteId)
+                .then().statusCode(200)
+                .header("ETag", notNullValue())
+                .extract().header("ETag");
+
+        given().header("If-None-Match", etag)
+                .when().get("/notes/" + noteId)
+                .then().statusCode(304)
+                .body(emptyString());
+
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"title\":\"etag changed\"}")
+                .when().put("/notes/" + noteId).then().statusCode(200);
+
+        given().header("If-None-Match", etag)
+                .when().get("/notes/" + noteId)
+                .then().statusCode(200)
+                .header("ETag", not(equalTo(etag)))
+                .body("title", equalTo("etag changed"));
+    }
+
+    @Test
+    public void testGetNotes_ListETag() {
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"title\":\"list etag\",\"content\":\"list etag\"}")
+                .when().post("/notes").then().statusCode(201);
+
+        String etag = given().when().get("/notes")
+                .then().statusCode(200)
+                .header("ETag", startsWith("W/"))
+                .extract().header("ETag");
+
+        given().header("If-None-Match", etag).when().get("/notes").then().statusCode(304);
+
+        given().header("X-API-Key", API_KEY).contentType("application/json")
+                .body("{\"title\":\"list etag 2\",\"content\":\"list etag 2\"}")
+                .when().post("/notes").then().statusCode(201);
+
+        given().header("If-None-Match", etag).when().get("/notes").then().statusCode(200);
+    }
+
+    @Test
+    public void testPutAndDelete_IfMatch() {
+        String created = given()
+                .header("X-API-Key", API_KEY)
+                .contentType("application/json")
+                .body("{\"title\":\"if match\",\"content\":\"if match\"}")
+                .when().post("/notes")
+                .then().statusCode(201)
+                .extract().header("ETag");
+        int noteId = given().when().get("/notes/latest").then().statusCode(200)
+                .extract().body().jsonPath().getInt("id");
+
+        String updated = given().header("X-API-Key", API_KEY).header("If-Match", created)
+                .contentType("application/json")
+                .body("{\"title\":\"first writer\"}")
+                .when().put("/notes/" + noteId)
+                .then().statusCode(200)
+                .extract().header("ETag");
+
+        // The second writer still holds the original version
+        given().header("X-API-Key", API_KEY).header("If-Match", created)
+                .contentType("application/json")
+                .body("{\"title\":\"second writer\"}")
+                .when().put("/notes/" + noteId)
+                .then().statusCode(412);
+        given().header("X-API-Key", API_KEY).header("If-Match", created)
+                .when().delete("/notes/" + noteId)
+                .then().statusCode(412);
+        given().header("X-API-Key", API_KEY).header("If-Match", "W/" + updated)
+                .when().delete("/notes/" + noteId)
+                .then().statusCode(412);
+
+        given().when().get("/notes/" + noteId).then().statusCode(200).body("title", equalTo("first writer"));
+
+        given().header("X-API-Key", API_KEY).header("If-Match", updated)
+                .when().delete("/notes/" + noteId)
+                .then().statusCode(204);
+    }
+
     // --- DELETE Tests ---
 
     @Test
@@ -0,0 +1,78 @@
+package com.onur.bootcamp;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.enterprise.inject.Typed;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs every NoteResourceTest against the reactive path with group commit. Typed keeps this class from also resolving as NoteResourceTest
+@QuarkusTest
+@Typed(ReactiveNoteResourceTest.class)
+@TestProfile(ReactiveNoteResourceTest.Reactive.class)
+public class ReactiveNoteResourceTest extends NoteResourceTest {
+    public static class Reactive implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("app.reactive.enabled", "true", "app.group-commit.enabled", "true");
+        }
+    }
+
+    @Inject
+    ReactiveNoteService reactiveNotes;
+
+    @Inject
+    NoteGroupCommitter groupCommitter;
+
+    @Test
+    public void testReactivePathEnabled() {
+        assertTrue(reactiveNotes.isEnabled());
+    }
+
+    @Test
+    public void testGroupCommit_ConcurrentCreates() throws Exception {
+        assertTrue(groupCommitter.isEnabled());
+
+        // Concurrent creates share commits, yet every caller gets its own note back
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Integer>> ids = new ArrayList<>();
+            for (int i = 0; i < 48; i++) {
+                String title = "grouped " + i;
+                ids.add(clients.submit(() -> given().header("X-API-Key", API_KEY).contentType("application/json")
+                        .body("{\"content\":\"" + title + "\",\"title\":\"" + title + "\"}")
+                        .when().post("/notes")
+                        .then().statusCode(201)
+                        .body("title", is(title))
+                        .extract().body().jsonPath().getInt("id")));
+            }
+
+            Set<Integer> distinct = new HashSet<>();
+            for (Future<Integer> id : ids) {
+                distinct.add(id.get());
+            }
+            assertEquals(48, distinct.size());
+
+            for (Integer id : distinct) {
+                given().when().get("/notes/" + id).then().statusCode(200);
+            }
+        } finally {
+            clients.shutdown();
+        }
+    }
+}
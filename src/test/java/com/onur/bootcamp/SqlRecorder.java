@@ -0,0 +1,34 @@
+package com.onur.bootcamp;
+
+import io.quarkus.hibernate.orm.PersistenceUnitExtension;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Collects the SQL Hibernate sends while recording, lets tests look at the statements behind a call
+@ApplicationScoped
+@PersistenceUnitExtension
+public class SqlRecorder implements StatementInspector {
+    private static final List<String> statements = new CopyOnWriteArrayList<>();
+    private static volatile boolean recording;
+
+    static void start() {
+        statements.clear();
+        recording = true;
+    }
+
+    static List<String> stop() {
+        recording = false;
+        return List.copyOf(statements);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (recording) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+}